@@ -0,0 +1,358 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a {@code GeneratedTable} for every class annotated with {@code @Table}.
+ *
+ * <p>The generated class lives next to the table class and accesses its fields directly,
+ * so FlatDB can build the schema, create the table and map rows without reflection.
+ * Classes whose columns can't be accessed from another class in the same package
+ * (private or final fields, no no-args constructor, private classes) are skipped with
+ * a note, and FlatDB keeps using reflection for them.</p>
+ *
+ * <p>The annotations are referenced by name, so this processor doesn't need FlatDB
+ * itself on the processor path.</p>
+ */
+public class TableSchemaProcessor extends AbstractProcessor {
+
+  private static final String TABLE = "com.cyr1en.flatdb.annotations.Table";
+  private static final String COLUMN = "com.cyr1en.flatdb.annotations.Column";
+  private static final String SUFFIX = "_FlatDB";
+
+  /**
+   * Mirror of the built-in mappings of {@code com.cyr1en.flatdb.types.TypeMap}.
+   * Maps a type to its SQL type name and default value. GeneratedTableTest checks that the
+   * DDL built from it matches the DDL that FlatDB builds from the TypeMap.
+   */
+  private static final Map<String, String[]> BUILT_IN_TYPES = new HashMap<>();
+
+  static {
+    builtIn("BIT", "0", "boolean", "java.lang.Boolean");
+    builtIn("VARCHAR", "null", "java.lang.String");
+    builtIn("NUMERIC", "0", "java.math.BigDecimal");
+    builtIn("INTEGER", "0", "int", "java.lang.Integer");
+    builtIn("BIGINT", "0", "long", "java.lang.Long");
+    builtIn("REAL", "0.0", "float", "java.lang.Float");
+    builtIn("FLOAT", "0.0", "double", "java.lang.Double");
+  }
+
+  private static void builtIn(String sqlType, String defaultValue, String... javaTypes) {
+    for (String javaType : javaTypes)
+      BUILT_IN_TYPES.put(javaType, new String[]{sqlType, defaultValue});
+  }
+
+  private Elements elements;
+  private Types types;
+  private Messager messager;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.elements = processingEnv.getElementUtils();
+    this.types = processingEnv.getTypeUtils();
+    this.messager = processingEnv.getMessager();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(TABLE);
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    TypeElement table = elements.getTypeElement(TABLE);
+    if (table == null) return false;
+    for (Element element : roundEnv.getElementsAnnotatedWith(table)) {
+      if (element.getKind() != ElementKind.CLASS) continue;
+      TypeElement type = (TypeElement) element;
+      String unsupported = checkSupported(type);
+      if (unsupported != null) {
+        messager.printMessage(Diagnostic.Kind.NOTE, "FlatDB will use reflection for " +
+                type.getQualifiedName() + " because " + unsupported, type);
+        continue;
+      }
+      try {
+        generate(type);
+      } catch (IOException e) {
+        messager.printMessage(Diagnostic.Kind.ERROR, "Could not generate the table of " +
+                type.getQualifiedName() + ": " + e.getMessage(), type);
+      }
+    }
+    return false;
+  }
+
+  private String checkSupported(TypeElement type) {
+    if (type.getModifiers().contains(Modifier.ABSTRACT)) return "it is abstract.";
+    if (!type.getTypeParameters().isEmpty()) return "it is generic.";
+    for (Element e = type; e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)) return e.getSimpleName() + " is private.";
+      if (e.getEnclosingElement().getKind() != ElementKind.PACKAGE && !e.getModifiers().contains(Modifier.STATIC))
+        return e.getSimpleName() + " is not a static class.";
+    }
+    List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+    boolean hasNoArgs = constructors.stream().anyMatch(c ->
+            c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+    if (!hasNoArgs) return "it doesn't have a non-private no-args constructor.";
+    for (VariableElement field : columnFields(type)) {
+      Set<Modifier> modifiers = field.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC))
+        return "the column " + field.getSimpleName() + " is private, final or static.";
+      if (field.asType().getKind() == TypeKind.CHAR) return "the column " + field.getSimpleName() + " is a char.";
+    }
+    return null;
+  }
+
+  private List<VariableElement> columnFields(TypeElement type) {
+    List<VariableElement> fields = new ArrayList<>();
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+      if (columnAnnotation(field) != null) fields.add(field);
+    return fields;
+  }
+
+  private AnnotationMirror columnAnnotation(Element element) {
+    return annotation(element, COLUMN);
+  }
+
+  private AnnotationMirror annotation(Element element, String name) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+      if (annotationType.getQualifiedName().contentEquals(name)) return mirror;
+    }
+    return null;
+  }
+
+  private Object value(AnnotationMirror mirror, String name) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+            elements.getElementValuesWithDefaults(mirror).entrySet())
+      if (entry.getKey().getSimpleName().contentEquals(name)) return entry.getValue().getValue();
+    return null;
+  }
+
+  private void generate(TypeElement type) throws IOException {
+    String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    String binaryName = elements.getBinaryName(type).toString();
+    String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+            .replace('$', '_') + SUFFIX;
+    String typeName = type.getQualifiedName().toString();
+
+    String nameOverride = (String) value(annotation(type, TABLE), "nameOverride");
+    String tableName = isBlank(nameOverride) ? type.getSimpleName().toString().toLowerCase() : nameOverride;
+
+    List<Column> columns = new ArrayList<>();
+    boolean hasPrimary = false;
+    for (VariableElement field : columnFields(type)) {
+      AnnotationMirror mirror = columnAnnotation(field);
+      Column column = new Column();
+      column.field = field.getSimpleName().toString();
+      String colOverride = (String) value(mirror, "nameOverride");
+      column.name = isBlank(colOverride) ? column.field.toLowerCase() : colOverride;
+      column.defaultValue = (String) value(mirror, "defaultValue");
+      column.autoIncrement = (Boolean) value(mirror, "autoIncrement");
+      boolean primaryKey = (Boolean) value(mirror, "primaryKey");
+      if (primaryKey && hasPrimary)
+        messager.printMessage(Diagnostic.Kind.WARNING, "Cannot make the column " + column.field +
+                " as primary key. Cannot define a secondary primary key!", field);
+      column.primaryKey = primaryKey && !hasPrimary;
+      hasPrimary |= column.primaryKey;
+      TypeMirror erasure = types.erasure(field.asType());
+      column.type = erasure.toString();
+      column.kind = erasure.getKind();
+      columns.add(column);
+    }
+
+    String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+      writer.write(source(packageName, simpleName, typeName, tableName, columns));
+    }
+  }
+
+  private String source(String packageName, String simpleName, String typeName, String tableName, List<Column> columns) {
+    StringBuilder sb = new StringBuilder();
+    if (!packageName.isEmpty())
+      sb.append("package ").append(packageName).append(";\n\n");
+    sb.append("/**\n * Generated by ").append(getClass().getName()).append(" for {@link ")
+            .append(typeName).append("}. Do not edit.\n */\n");
+    sb.append("public final class ").append(simpleName)
+            .append(" implements com.cyr1en.flatdb.mapper.GeneratedTable<").append(typeName).append("> {\n\n");
+
+    sb.append("  @Override\n  public String getTableName() {\n    return ")
+            .append(literal(tableName)).append(";\n  }\n\n");
+
+    sb.append("  @Override\n  public com.cyr1en.flatdb.schema.TableSchema<").append(typeName)
+            .append("> getSchema(String tableName) {\n")
+            .append("    return new com.cyr1en.flatdb.schema.TableSchema<>(tableName, ").append(typeName)
+            .append(".class, java.util.Arrays.asList(");
+    for (int i = 0; i < columns.size(); i++) {
+      Column c = columns.get(i);
+      sb.append(i == 0 ? "\n" : ",\n").append("        new com.cyr1en.flatdb.schema.ColumnSchema(")
+              .append(literal(c.name)).append(", ").append(c.type).append(".class, ")
+              .append(literal(c.defaultValue)).append(", ").append(c.primaryKey).append(", ")
+              .append(c.autoIncrement).append(")");
+    }
+    sb.append("));\n  }\n\n");
+
+    String ddl = createTableSql(columns);
+    sb.append("  @Override\n  public String getCreateTableSql(String tableName) {\n    return ")
+            .append(ddl == null ? "null" : "\"CREATE TABLE \" + tableName + " + literal(ddl))
+            .append(";\n  }\n\n");
+
+    sb.append("  @Override\n  @SuppressWarnings(\"unchecked\")\n  public ").append(typeName)
+            .append(" read(java.sql.ResultSet rs) throws java.sql.SQLException {\n")
+            .append("    ").append(typeName).append(" entity = new ").append(typeName).append("();\n");
+    for (int i = 0; i < columns.size(); i++) {
+      Column c = columns.get(i);
+      sb.append("    entity.").append(c.field).append(" = ").append(readExpression(c, i + 1)).append(";\n");
+    }
+    sb.append("    return entity;\n  }\n\n");
+
+    sb.append("  @Override\n  public Object get(").append(typeName).append(" entity, int column) {\n")
+            .append("    switch (column) {\n");
+    for (int i = 0; i < columns.size(); i++)
+      sb.append("      case ").append(i).append(": return entity.").append(columns.get(i).field).append(";\n");
+    sb.append("      default: throw new IndexOutOfBoundsException(\"No column at \" + column);\n")
+            .append("    }\n  }\n}\n");
+    return sb.toString();
+  }
+
+  /**
+   * Mirrors the column definitions of {@code com.cyr1en.flatdb.TableProcessor}.
+   *
+   * @return everything after the table name of a CREATE TABLE statement, or null if
+   * a column doesn't have a built-in type.
+   */
+  private String createTableSql(List<Column> columns) {
+    if (columns.isEmpty()) return null;
+    StringBuilder sb = new StringBuilder(" (");
+    for (int i = 0; i < columns.size(); i++) {
+      Column c = columns.get(i);
+      String[] sqlType = BUILT_IN_TYPES.get(c.type);
+      if (sqlType == null) return null;
+      if (i > 0) sb.append(", ");
+      sb.append(c.name).append(' ').append(sqlType[0]).append(" NOT NULL");
+      if (c.autoIncrement) {
+        sb.append(" AUTO_INCREMENT");
+        if (c.primaryKey) sb.append(" PRIMARY KEY");
+      } else {
+        String defaultValue = isBlank(c.defaultValue) ? sqlType[1] : c.defaultValue;
+        sb.append(" DEFAULT ").append(isNumeric(defaultValue) ? defaultValue : "'" + defaultValue + "'");
+      }
+    }
+    return sb.append(")").toString();
+  }
+
+  private String readExpression(Column c, int index) {
+    switch (c.kind) {
+      case BOOLEAN: return "rs.getBoolean(" + index + ")";
+      case BYTE: return "rs.getByte(" + index + ")";
+      case SHORT: return "rs.getShort(" + index + ")";
+      case INT: return "rs.getInt(" + index + ")";
+      case LONG: return "rs.getLong(" + index + ")";
+      case FLOAT: return "rs.getFloat(" + index + ")";
+      case DOUBLE: return "rs.getDouble(" + index + ")";
+      default:
+        if (c.type.equals("java.lang.String")) return "rs.getString(" + index + ")";
+        return "(" + c.type + ") rs.getObject(" + index + ", " + c.type + ".class)";
+    }
+  }
+
+  private static String literal(String s) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (char c : s.toCharArray()) {
+      switch (c) {
+        case '"': sb.append("\\\""); break;
+        case '\\': sb.append("\\\\"); break;
+        case '\n': sb.append("\\n"); break;
+        case '\r': sb.append("\\r"); break;
+        case '\t': sb.append("\\t"); break;
+        default: sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  /**
+   * Same rules as FastStrings#isBlank in FlatDB.
+   */
+  private static boolean isBlank(String s) {
+    if (s == null || s.isEmpty()) return true;
+    for (char c : s.toCharArray())
+      if (c != ' ' && c != '\r' && c != '\n' && c != '\t' && c != '\b') return false;
+    return true;
+  }
+
+  /**
+   * Same rules as FastStrings#isNumeric in FlatDB.
+   */
+  private static boolean isNumeric(String s) {
+    if (isBlank(s)) return false;
+    for (char c : s.toCharArray())
+      if (c < '0' || c > '9') return false;
+    return true;
+  }
+
+  private static class Column {
+    private String field;
+    private String name;
+    private String type;
+    private TypeKind kind;
+    private String defaultValue;
+    private boolean primaryKey;
+    private boolean autoIncrement;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares single-row inserts through {@link Database#executeUpdate(String, Object...)}
+ * with {@link FlatTable#insertAll(java.util.Collection)}.
+ *
+ * <p>Every invocation inserts {@link #ROWS} rows, so the reported score is rows per second.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  @Param({"100", "1000", "5000"})
+  private int batchSize;
+
+  private Database database;
+  private FlatTable<BenchRow> table;
+  private List<BenchRow> rows;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:batchBench;DB_CLOSE_DELAY=-1")
+            .setBatchSize(batchSize)
+            .appendTable(BenchRow.class)
+            .build();
+    table = database.getTable(BenchRow.class);
+    rows = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++)
+      rows.add(new BenchRow("row" + i, i));
+  }
+
+  @Setup(Level.Iteration)
+  public void truncate() {
+    database.executeUpdate("TRUNCATE TABLE " + table.getTableName());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int singleRowInsert() {
+    String sql = "INSERT INTO " + table.getTableName() + " (name, score) VALUES (?, ?)";
+    int inserted = 0;
+    for (BenchRow row : rows)
+      inserted += database.executeUpdate(sql, row.name, row.score);
+    return inserted;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public int batchInsert() {
+    return table.insertAll(rows);
+  }
+
+  @Table(nameOverride = "bench_row")
+  public static class BenchRow {
+    @Column(primaryKey = true, autoIncrement = true) int id;
+    @Column String name;
+    @Column int score;
+
+    public BenchRow() {
+    }
+
+    BenchRow(String name, int score) {
+      this.name = name;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link FlatTable#exportCsv(Path)} and {@link FlatTable#importCsv(Path)}, with H2's
+ * CSVREAD and CSVWRITE and with the streaming fallback.
+ *
+ * <p>Every invocation moves {@link #ROWS} rows, so the reported score is rows per second.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmark {
+
+  private static final int ROWS = 50_000;
+
+  @Param({"true", "false"})
+  private boolean nativeCsv;
+
+  private Database database;
+  private FlatTable<CsvRow> table;
+  private FlatTable<CsvImportRow> importTable;
+  private Path exportFile;
+  private Path importFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:csvBench;DB_CLOSE_DELAY=-1")
+            .setBatchSize(5000)
+            .appendTable(CsvRow.class, CsvImportRow.class)
+            .build();
+    table = database.getTable(CsvRow.class);
+    table.setNativeCsv(nativeCsv);
+    importTable = database.getTable(CsvImportRow.class);
+    importTable.setNativeCsv(nativeCsv);
+    List<CsvRow> rows = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++)
+      rows.add(new CsvRow(i, "row, " + i, i * 0.5));
+    table.insertAll(rows);
+    exportFile = Files.createTempFile("flatdb-export", ".csv");
+    importFile = Files.createTempFile("flatdb-import", ".csv");
+    table.exportCsv(importFile);
+  }
+
+  /**
+   * An invocation moves tens of thousands of rows, so truncating before each one doesn't skew the timing.
+   */
+  @Setup(Level.Invocation)
+  public void truncate() {
+    database.executeUpdate("TRUNCATE TABLE flatdb_csv_import");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+    Files.deleteIfExists(exportFile);
+    Files.deleteIfExists(importFile);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public long export() throws IOException, SQLException {
+    return table.exportCsv(exportFile);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public long importRows() throws IOException, SQLException {
+    return importTable.importCsv(importFile);
+  }
+
+  @Table(nameOverride = "csv_row")
+  public static class CsvRow {
+    @Column(primaryKey = true) int id;
+    @Column String name;
+    @Column double score;
+
+    public CsvRow() {
+    }
+
+    CsvRow(int id, String name, double score) {
+      this.id = id;
+      this.name = name;
+      this.score = score;
+    }
+  }
+
+  @Table(nameOverride = "csv_import")
+  public static class CsvImportRow {
+    @Column(primaryKey = true) int id;
+    @Column String name;
+    @Column double score;
+  }
+}
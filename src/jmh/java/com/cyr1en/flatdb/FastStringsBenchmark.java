@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.util.FastStrings;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@link FastStrings} utilities on short and long inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastStringsBenchmark {
+
+  @Param({"16", "1024"})
+  private int length;
+
+  private String blank;
+  private String numeric;
+  private String text;
+  private String nonPlane;
+  private Object[] parts;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    StringBuilder blank = new StringBuilder();
+    StringBuilder numeric = new StringBuilder();
+    StringBuilder text = new StringBuilder();
+    StringBuilder nonPlane = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      blank.append(i % 2 == 0 ? ' ' : '\t');
+      numeric.append((char) ('0' + i % 10));
+      text.append((char) ('a' + i % 26));
+      if (i % 8 == 0) nonPlane.appendCodePoint(0x1F600);
+      else nonPlane.append((char) ('a' + i % 26));
+    }
+    this.blank = blank.toString();
+    this.numeric = numeric.toString();
+    this.text = text.toString();
+    this.nonPlane = nonPlane.toString();
+    this.parts = this.text.split("(?<=\\G.{4})");
+  }
+
+  @Benchmark
+  public boolean isBlank() {
+    return FastStrings.isBlank(blank);
+  }
+
+  @Benchmark
+  public boolean isNumeric() {
+    return FastStrings.isNumeric(numeric);
+  }
+
+  @Benchmark
+  public int countOccurrences() {
+    return FastStrings.countOccurrences(text, 'e');
+  }
+
+  @Benchmark
+  public String join() {
+    return FastStrings.join(parts, ", ");
+  }
+
+  @Benchmark
+  public String removeNonPlaneChar() {
+    return FastStrings.removeNonPlaneChar(nonPlane);
+  }
+
+  @Benchmark
+  public List<Integer> getIndexOfNonPlaneChars() {
+    return FastStrings.getIndexOfNonPlaneChars(nonPlane);
+  }
+}
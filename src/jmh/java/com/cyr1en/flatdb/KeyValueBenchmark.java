@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of primary key reads and writes through {@link FlatTable#kv()}, compared with the same
+ * SELECT and UPDATE through {@link Database}, whose results are copied into a row set first.
+ * {@link KeyValueView#get(Object)} is {@link FlatTable#findById(Object)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyValueBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  private Database database;
+  private FlatTable<KvRow> table;
+  private KeyValueView<KvRow> kv;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:kvBench;DB_CLOSE_DELAY=-1")
+            .appendTable(KvRow.class)
+            .build();
+    table = database.getTable(KvRow.class);
+    kv = table.kv();
+    List<KvRow> rows = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++)
+      rows.add(new KvRow(i, "row" + i, i));
+    table.insertAll(rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  public Optional<KvRow> kvGet() {
+    return kv.get(ThreadLocalRandom.current().nextInt(ROWS));
+  }
+
+  @Benchmark
+  public String sqlSelect() throws SQLException {
+    ResultSet rs = database.executeQuery("SELECT id, name, score FROM flatdb_kv_row WHERE id = ?",
+            ThreadLocalRandom.current().nextInt(ROWS)).orElseThrow(IllegalStateException::new);
+    return rs.next() ? rs.getString(2) : null;
+  }
+
+  @Benchmark
+  public int kvPut() {
+    int id = ThreadLocalRandom.current().nextInt(ROWS);
+    return kv.put(new KvRow(id, "row" + id, id + 1));
+  }
+
+  @Benchmark
+  public int sqlUpdate() {
+    int id = ThreadLocalRandom.current().nextInt(ROWS);
+    return database.executeUpdate("UPDATE flatdb_kv_row SET name = ?, score = ? WHERE id = ?", "row" + id, id + 1, id);
+  }
+
+  @Table(nameOverride = "kv_row")
+  public static class KvRow {
+    @Column(primaryKey = true) int id;
+    @Column String name;
+    @Column int score;
+
+    public KvRow() {
+    }
+
+    KvRow(int id, String name, int score) {
+      this.id = id;
+      this.name = name;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Database#executeQuery(String, Object...)} and
+ * {@link Database#executeUpdate(String, Object...)} against an in-memory H2 database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  private Database database;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:queryBench;DB_CLOSE_DELAY=-1")
+            .build();
+    database.executeUpdate("CREATE TABLE flatdb_query_bench (id INT PRIMARY KEY, name VARCHAR(64), score INT)");
+    for (int i = 0; i < ROWS; i++)
+      database.executeUpdate("INSERT INTO flatdb_query_bench VALUES (?, ?, ?)", i, "row" + i, i);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public ResultSet selectByKey() {
+    return database.executeQuery("SELECT * FROM flatdb_query_bench WHERE id = ?",
+            ThreadLocalRandom.current().nextInt(ROWS)).orElse(null);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public ResultSet selectByKeyContended() {
+    return selectByKey();
+  }
+
+  @Benchmark
+  public ResultSet selectRange() {
+    int from = ThreadLocalRandom.current().nextInt(ROWS - 100);
+    return database.executeQuery("SELECT * FROM flatdb_query_bench WHERE id BETWEEN ? AND ?",
+            from, from + 100).orElse(null);
+  }
+
+  @Benchmark
+  public int updateByKey() {
+    int id = ThreadLocalRandom.current().nextInt(ROWS);
+    return database.executeUpdate("UPDATE flatdb_query_bench SET score = score + 1 WHERE id = ?", id);
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cyr1en.flatdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of short updates while other threads run full table scans, with and without a read pool.
+ *
+ * <p>Both pools are small on purpose, so that without a read pool the scans hold the connections
+ * the updates wait for. {@link Database#getPoolMetrics()} and {@link Database#getReadPoolMetrics()}
+ * are printed after every trial to show where the waiting happened.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadPoolBenchmark {
+
+  private static final int ROWS = 20_000;
+
+  @Param({"false", "true"})
+  public boolean readPool;
+
+  private Database database;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    DatabaseBuilder builder = new DatabaseBuilder()
+            .setPath("mem:readPoolBench;DB_CLOSE_DELAY=-1")
+            .setMaxPoolSize(2);
+    if (readPool) builder.enableReadPool(2);
+    database = builder.build();
+    database.executeUpdate("CREATE TABLE bench_row (id INT PRIMARY KEY, score INT)");
+    database.executeUpdate("INSERT INTO bench_row SELECT X, X FROM SYSTEM_RANGE(1, ?)", ROWS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.out.println("\nwriter pool wait: " + database.getPoolMetrics().getAverageWaitTime(TimeUnit.MICROSECONDS) + "us");
+    database.getReadPoolMetrics().ifPresent(metrics ->
+            System.out.println("read pool wait: " + metrics.getAverageWaitTime(TimeUnit.MICROSECONDS) + "us"));
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(3)
+  public long scan() throws SQLException {
+    ResultSet rs = database.executeQuery("SELECT SUM(score) FROM bench_row").orElseThrow(IllegalStateException::new);
+    return rs.next() ? rs.getLong(1) : 0;
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(1)
+  public int update() {
+    return database.executeUpdate("UPDATE bench_row SET score = score + 1 WHERE id = ?",
+            ThreadLocalRandom.current().nextInt(ROWS) + 1);
+  }
+}
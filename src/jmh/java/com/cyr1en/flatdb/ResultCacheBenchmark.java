@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a query that is served from the result cache, compared with running it every time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultCacheBenchmark {
+
+  private static final String QUERY = "SELECT id, name, score FROM flatdb_result_bench WHERE score < ?";
+
+  @Param({"10", "1000"})
+  private int rows;
+
+  private Database cached;
+  private Database uncached;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    cached = database("mem:resultCacheBench;DB_CLOSE_DELAY=-1", 16 * 1024 * 1024);
+    uncached = database("mem:resultNoCacheBench;DB_CLOSE_DELAY=-1", 0);
+  }
+
+  private Database database(String path, long cacheBytes) throws SQLException {
+    DatabaseBuilder builder = new DatabaseBuilder().setPath(path);
+    if (cacheBytes > 0) builder.enableResultCache(cacheBytes);
+    Database database = builder.build();
+    database.executeUpdate("CREATE TABLE flatdb_result_bench (id INT PRIMARY KEY, name VARCHAR(64), score INT)");
+    for (int i = 0; i < rows; i++)
+      database.executeUpdate("INSERT INTO flatdb_result_bench VALUES (?, ?, ?)", i, "row" + i, i);
+    return database;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (Database database : new Database[]{cached, uncached}) {
+      database.executeUpdate("DROP ALL OBJECTS");
+      database.close();
+    }
+  }
+
+  @Benchmark
+  public long cacheHit() throws SQLException {
+    return readAll(cached);
+  }
+
+  @Benchmark
+  public long cacheMiss() throws SQLException {
+    return readAll(uncached);
+  }
+
+  private long readAll(Database database) throws SQLException {
+    long sum = 0;
+    try (ResultSet rs = database.executeQuery(QUERY, rows).orElseThrow(IllegalStateException::new)) {
+      while (rs.next())
+        sum += rs.getInt(3);
+    }
+    return sum;
+  }
+}
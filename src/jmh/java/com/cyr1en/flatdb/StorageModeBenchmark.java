@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Latency of the same reads and writes for every {@link StorageMode}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageModeBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  @Param({"FILE", "MEMORY", "NIO_MAPPED", "MEMORY_WITH_PERSIST"})
+  public StorageMode mode;
+
+  private Path directory;
+  private Database database;
+  private FlatTable<ModeRow> table;
+  private final AtomicInteger nextId = new AtomicInteger(ROWS);
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, SQLException {
+    directory = Files.createTempDirectory("flatdb-storage-bench");
+    database = new DatabaseBuilder()
+            .setPath(directory.resolve("bench").toString())
+            .setStorageMode(mode)
+            .setCheckpointInterval(5, TimeUnit.SECONDS)
+            .appendTable(ModeRow.class)
+            .build();
+    table = database.getTable(ModeRow.class);
+    for (int i = 0; i < ROWS; i++)
+      table.insert(new ModeRow(i, "row" + i, i));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    database.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public Optional<ModeRow> select() {
+    return table.findById(ThreadLocalRandom.current().nextInt(ROWS));
+  }
+
+  @Benchmark
+  public int update() {
+    int id = ThreadLocalRandom.current().nextInt(ROWS);
+    return database.executeUpdate("UPDATE flatdb_mode_row SET score = score + 1 WHERE id = ?", id);
+  }
+
+  @Benchmark
+  public int insert() {
+    int id = nextId.getAndIncrement();
+    return table.insert(new ModeRow(id, "row" + id, id));
+  }
+
+  @Table(nameOverride = "mode_row")
+  public static class ModeRow {
+    @Column(primaryKey = true) int id;
+    @Column String name;
+    @Column int score;
+
+    public ModeRow() {
+    }
+
+    ModeRow(int id, String name, int score) {
+      this.id = id;
+      this.name = name;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long startup takes to create {@link #tables} tables of {@link #columns} columns
+ * from scratch, sequentially and on a fork join pool.
+ *
+ * <p>The schemas are synthetic, so this measures the metadata snapshot, the diff and the DDL,
+ * but not reading the classes through reflection.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TableInitBenchmark {
+
+  @Param({"10", "100", "1000"})
+  private int tables;
+
+  @Param({"5", "25"})
+  private int columns;
+
+  @Param({"1", "4"})
+  private int parallelism;
+
+  private Database database;
+  private List<TableSchema<?>> schemas;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:tableInitBench;DB_CLOSE_DELAY=-1")
+            .setMaxPoolSize(parallelism + 1)
+            .build();
+    schemas = new ArrayList<>(tables);
+    Class<?>[] types = {String.class, long.class, double.class, boolean.class, int.class};
+    for (int i = 0; i < tables; i++) {
+      List<ColumnSchema> columnSchemas = new ArrayList<>(columns);
+      columnSchemas.add(new ColumnSchema("id", int.class, "", true, true));
+      for (int c = 1; c < columns; c++)
+        columnSchemas.add(new ColumnSchema("column_" + c, types[c % types.length], "", false, false));
+      schemas.add(new TableSchema<>(database.getDb_prefix() + "bench_table_" + i, Object.class, columnSchemas));
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void dropTables() {
+    database.executeUpdate("DROP ALL OBJECTS");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  public void initializeTables() throws SQLException {
+    ForkJoinPool forkJoin = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    try {
+      new TableProcessor(database).reconcile(schemas, forkJoin);
+    } finally {
+      if (forkJoin != null) forkJoin.shutdown();
+    }
+  }
+}
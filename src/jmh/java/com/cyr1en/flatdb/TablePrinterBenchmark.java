@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.util.DBTablePrinter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link DBTablePrinter#printResultSet(ResultSet)} on large result sets.
+ *
+ * <p>Standard out is discarded while the benchmark runs, so this measures formatting only.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TablePrinterBenchmark {
+
+  @Param({"1000", "10000"})
+  private int rows;
+
+  private Database database;
+  private ResultSet resultSet;
+  private PrintStream stdout;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:printerBench;DB_CLOSE_DELAY=-1")
+            .build();
+    database.executeUpdate("CREATE TABLE flatdb_printer_bench " +
+            "(id INT PRIMARY KEY, name VARCHAR(64), score DOUBLE, created TIMESTAMP, active BOOLEAN)");
+    for (int i = 0; i < rows; i++)
+      database.executeUpdate("INSERT INTO flatdb_printer_bench VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?)",
+              i, "row number " + i, i / 3.0, i % 2 == 0);
+    resultSet = database.executeQuery("SELECT * FROM flatdb_printer_bench").orElseThrow(IllegalStateException::new);
+    stdout = System.out;
+    System.setOut(new PrintStream(new OutputStream() {
+      @Override
+      public void write(int b) {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+      }
+    }));
+  }
+
+  @Setup(Level.Invocation)
+  public void rewind() throws SQLException {
+    resultSet.beforeFirst();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    System.setOut(stdout);
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  public void printResultSet() {
+    DBTablePrinter.printResultSet(resultSet);
+  }
+}
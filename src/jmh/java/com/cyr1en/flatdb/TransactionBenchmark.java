@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cyr1en.flatdb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a group of updates that is committed once with {@link Database#inTransaction(TransactionWork)},
+ * compared with committing every update on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+
+  private static final int ROWS = 1_000;
+
+  @Param({"10", "100"})
+  public int updates;
+
+  private Database database;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setup() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath(System.getProperty("java.io.tmpdir") + "/flatdb-tx-bench")
+            .build();
+    database.executeUpdate("DROP TABLE IF EXISTS account");
+    database.executeUpdate("CREATE TABLE account (id INT PRIMARY KEY, balance INT)");
+    for (int i = 0; i < ROWS; i++)
+      database.executeUpdate("INSERT INTO account VALUES (?, 0)", i);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Benchmark
+  public int autoCommit() {
+    int updated = 0;
+    for (int i = 0; i < updates; i++)
+      updated += database.executeUpdate("UPDATE account SET balance = balance + 1 WHERE id = ?", nextId());
+    return updated;
+  }
+
+  @Benchmark
+  public int inTransaction() throws SQLException {
+    return database.inTransaction(tx -> {
+      int updated = 0;
+      for (int i = 0; i < updates; i++)
+        updated += tx.executeUpdate("UPDATE account SET balance = balance + 1 WHERE id = ?", nextId());
+      return updated;
+    });
+  }
+
+  private int nextId() {
+    next = (next + 1) % ROWS;
+    return next;
+  }
+}
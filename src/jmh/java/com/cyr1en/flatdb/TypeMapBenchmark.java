@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.types.SQLTypePair;
+import com.cyr1en.flatdb.types.TypeMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Types;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of looking up the SQL type of a built-in, a custom and an unmapped java type, globally and
+ * through a database's own map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeMapBenchmark {
+
+  private TypeMap databaseTypes;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    TypeMap.addCustomType(UUID.class, SQLTypePair.of(Types.VARCHAR, "null"), true);
+    databaseTypes = new TypeMap(TypeMap.global());
+    databaseTypes.register(Thread.State.class, SQLTypePair.of(Types.VARCHAR, "null"), true);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    TypeMap.removeCustomType(UUID.class);
+  }
+
+  @Benchmark
+  public SQLTypePair builtInType() {
+    return TypeMap.getSQLType(String.class);
+  }
+
+  @Benchmark
+  public SQLTypePair primitiveType() {
+    return TypeMap.getSQLType(int.class);
+  }
+
+  @Benchmark
+  public SQLTypePair customType() {
+    return TypeMap.getSQLType(UUID.class);
+  }
+
+  @Benchmark
+  public SQLTypePair unmappedType() {
+    return TypeMap.getSQLType(Thread.class);
+  }
+
+  @Benchmark
+  public SQLTypePair databaseCustomType() {
+    return databaseTypes.resolve(Thread.State.class);
+  }
+
+  @Benchmark
+  public SQLTypePair databaseInheritedType() {
+    return databaseTypes.resolve(UUID.class);
+  }
+}
@@ -24,26 +24,246 @@
 
 package com.cyr1en.flatdb;
 
+import com.cyr1en.flatdb.backup.BackupMetrics;
+import com.cyr1en.flatdb.mapper.RowMapper;
+import com.cyr1en.flatdb.metrics.StatementMetrics;
+import com.cyr1en.flatdb.pool.PoolMetrics;
+import com.cyr1en.flatdb.types.TypeMap;
+import com.google.common.cache.CacheStats;
 import org.intellij.lang.annotations.Language;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
-public interface Database {
-  Optional<ResultSet> executeQuery(@Language("SQL") String query, String... replacements);
+public interface Database extends AutoCloseable {
+  /**
+   * Execute a query as a {@link java.sql.PreparedStatement}.
+   *
+   * <p>Every '?' in the query is bound to the matching value of params, in order.
+   * Repeated queries are served from the pooled connection's statement cache and
+   * skip parsing entirely.</p>
+   *
+   * @param query the SQL query to execute.
+   * @param params values for the '?' parameters of the query.
+   * @return the result of the query, or an empty {@link Optional} if the query failed.
+   */
+  Optional<ResultSet> executeQuery(@Language("SQL") String query, Object... params);
 
-  int executeUpdate(@Language("SQL") String sql, String... replacements);
+  /**
+   * {@link #executeQuery(String, Object...)} with a timeout that replaces the default one of
+   * {@link DatabaseBuilder#setQueryTimeout(long, TimeUnit)}. A timeout of 0 means none.
+   */
+  Optional<ResultSet> executeQuery(long timeout, TimeUnit unit, @Language("SQL") String query, Object... params);
+
+  /**
+   * Asynchronous version of {@link #executeQuery(String, Object...)}.
+   *
+   * <p>The query runs on the database's async executor with its own pooled connection.</p>
+   *
+   * @return a handle that completes with the result of the query, or exceptionally with the
+   * {@link java.sql.SQLException} of a failed query or a
+   * {@link java.util.concurrent.RejectedExecutionException} if too many tasks are pending.
+   * {@link QueryHandle#cancel()} stops the query while it runs.
+   */
+  QueryHandle<ResultSet> executeQueryAsync(@Language("SQL") String query, Object... params);
+
+  /**
+   * {@link #executeQueryAsync(String, Object...)} with a timeout that replaces the default one.
+   */
+  QueryHandle<ResultSet> executeQueryAsync(long timeout, TimeUnit unit, @Language("SQL") String query,
+                                           Object... params);
+
+  /**
+   * Lazily stream the result of a query.
+   *
+   * <p>Rows are fetched and mapped while the stream is consumed, so short-circuiting
+   * operations like {@link Stream#limit(long)} and {@link Stream#findFirst()} stop reading
+   * early. The stream holds a pooled connection until every row was read or the stream is
+   * closed, so it should be used in a try-with-resources block.</p>
+   *
+   * <p>{@link java.sql.SQLException}s that happen while the stream is consumed are thrown as
+   * {@link com.cyr1en.flatdb.exceptions.UncheckedSQLException}.</p>
+   *
+   * @param query the SQL query to execute.
+   * @param mapper maps every row of the result.
+   * @param params values for the '?' parameters of the query.
+   * @return a lazy {@link Stream} of mapped rows, or an empty stream if the query failed.
+   */
+  <T> Stream<T> stream(@Language("SQL") String query, RowMapper<T> mapper, Object... params);
+
+  /**
+   * Execute an update as a {@link java.sql.PreparedStatement}.
+   *
+   * @param sql the SQL statement to execute.
+   * @param params values for the '?' parameters of the statement.
+   * @return the number of affected rows, or 0 if the update failed.
+   */
+  int executeUpdate(@Language("SQL") String sql, Object... params);
+
+  /**
+   * {@link #executeUpdate(String, Object...)} with a timeout that replaces the default one of
+   * {@link DatabaseBuilder#setQueryTimeout(long, TimeUnit)}. A timeout of 0 means none.
+   */
+  int executeUpdate(long timeout, TimeUnit unit, @Language("SQL") String sql, Object... params);
+
+  /**
+   * Asynchronous version of {@link #executeUpdate(String, Object...)}.
+   *
+   * @return a handle that completes with the number of affected rows. See
+   * {@link #executeQueryAsync(String, Object...)} for how it fails and is cancelled.
+   */
+  QueryHandle<Integer> executeUpdateAsync(@Language("SQL") String sql, Object... params);
+
+  /**
+   * {@link #executeUpdateAsync(String, Object...)} with a timeout that replaces the default one.
+   */
+  QueryHandle<Integer> executeUpdateAsync(long timeout, TimeUnit unit, @Language("SQL") String sql, Object... params);
+
+  /**
+   * Queue an update to be committed together with other queued updates.
+   *
+   * <p>With write-behind enabled through {@link DatabaseBuilder#enableWriteBehind(int, long,
+   * java.util.concurrent.TimeUnit, int)}, the update is committed in a group by the writer
+   * thread. Otherwise this is the same as {@link #executeUpdateAsync(String, Object...)}.</p>
+   *
+   * @return a future that completes with the number of affected rows once the update is durable.
+   */
+  CompletableFuture<Integer> enqueueUpdate(@Language("SQL") String sql, Object... params);
+
+  /**
+   * Commit every update that was queued with {@link #enqueueUpdate(String, Object...)} so far.
+   *
+   * @return a future that completes once those updates were committed.
+   */
+  CompletableFuture<Void> flush();
+
+  /**
+   * Run work in a single transaction with the default {@link TransactionConfig} of
+   * {@link DatabaseBuilder#setTransactionConfig(TransactionConfig)}.
+   *
+   * @see #inTransaction(TransactionConfig, TransactionWork)
+   */
+  <T> T inTransaction(TransactionWork<T> work) throws SQLException;
+
+  /**
+   * Run work in a single transaction that is committed once the work returns, or rolled back
+   * if the work or one of its statements failed.
+   *
+   * <p>Every call on this database from the work's thread joins the transaction, see
+   * {@link Transaction}. If the transaction failed on a lock timeout or deadlock, it is run again
+   * after a jittered backoff, up to {@link TransactionConfig#getMaxRetries()} times. A call from
+   * within a transaction runs the work within a savepoint of the outer transaction instead.</p>
+   *
+   * @return what the work returned.
+   * @throws SQLException if the transaction failed and wasn't retried.
+   */
+  <T> T inTransaction(TransactionConfig config, TransactionWork<T> work) throws SQLException;
+
+  /**
+   * Drop the cached query results that read one of the given tables, or every cached result
+   * if no table is given.
+   *
+   * <p>Updates through this database invalidate the result cache by themselves. This is only
+   * needed after writing through a connection from {@link #getConnection()}.</p>
+   *
+   * @param tableNames full names of the tables, including the database prefix.
+   */
+  void invalidateResultCache(String... tableNames);
+
+  /**
+   * @return statistics of the query result cache, or an empty {@link Optional} if it isn't enabled.
+   */
+  Optional<CacheStats> getResultCacheStats();
 
   Optional<DatabaseMetaData> getMetaData();
 
   String getDb_prefix();
 
-  Connection getConnection();
+  /**
+   * Lease a connection from this database's connection pool.
+   *
+   * <p>Closing the returned connection gives it back to the pool. Within
+   * {@link #inTransaction(TransactionWork)}, this returns the connection of the transaction.</p>
+   *
+   * @return a pooled {@link Connection}.
+   * @throws SQLException if no connection could be leased within the acquire timeout.
+   */
+  Connection getConnection() throws SQLException;
+
+  PoolMetrics getPoolMetrics();
+
+  /**
+   * @return the metrics of the read-only pool that queries run on, or an empty {@link Optional}
+   * unless one was set with {@link DatabaseBuilder#setReadPool(com.cyr1en.flatdb.pool.PoolConfig)}.
+   * Comparing its wait times with {@link #getPoolMetrics()} shows how much the routes contend.
+   */
+  Optional<PoolMetrics> getReadPoolMetrics();
+
+  /**
+   * @return latency histograms per statement fingerprint and per table, or an empty {@link Optional}
+   * unless {@link DatabaseBuilder#enableStatementMetrics()} was called.
+   */
+  Optional<StatementMetrics> getMetrics();
+
+  /**
+   * Back the database up to a file while it stays in use.
+   *
+   * <p>The backup runs on a connection of its own, so queries and updates keep going on the pooled
+   * connections. On H2 the file is a zip archive; on SQLite it is a copy of the database file.
+   * Restore it with {@link DatabaseBuilder#restore(Path)}.</p>
+   *
+   * @throws SQLException if the backup failed or the driver doesn't support backups.
+   */
+  void backup(Path file) throws SQLException;
+
+  /**
+   * @return the counters of every backup. The foreground latency histograms are only filled if
+   * {@link DatabaseBuilder#setBackups(com.cyr1en.flatdb.backup.BackupConfig)} was called; set a
+   * config without an interval to track them for backups that are only started by hand.
+   */
+  BackupMetrics getBackupMetrics();
 
-  Map<Class<?>,FlatTable> getTables();
+  Map<Class<?>, FlatTable<?>> getTables();
+
+  /**
+   * Get the {@link FlatTable} that was created for a class passed to {@link DatabaseBuilder#appendTable(Class[])}.
+   *
+   * @param tableClass the class annotated with {@link com.cyr1en.flatdb.annotations.Table}.
+   * @return the {@link FlatTable} of the class, or null if the class wasn't processed.
+   */
+  <T> FlatTable<T> getTable(Class<T> tableClass);
+
+  /**
+   * @return how many rows a {@link FlatTable} sends in one JDBC batch by default.
+   */
+  int getBatchSize();
+
+  /**
+   * @return the JDBC fetch size that {@link #stream(String, RowMapper, Object...)} uses.
+   */
+  int getFetchSize();
+
+  /**
+   * @return the name of the JDBC driver that this database uses, i.e. "h2" or "sqlite".
+   */
+  String getDriverName();
+
+  /**
+   * @return the java to SQL type mappings of this database, including the custom types that were
+   * added to its {@link DatabaseBuilder}.
+   */
+  TypeMap getTypeMap();
 
   boolean tableExists(String tableName);
+
+  @Override
+  void close();
 }
@@ -25,16 +25,29 @@
 package com.cyr1en.flatdb;
 
 import com.cyr1en.flatdb.annotations.Table;
+import com.cyr1en.flatdb.backup.BackupConfig;
+import com.cyr1en.flatdb.backup.BackupManager;
+import com.cyr1en.flatdb.cache.CacheSpec;
+import com.cyr1en.flatdb.concurrent.BackpressurePolicy;
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.SlowQueryLogConfig;
+import com.cyr1en.flatdb.pool.PoolConfig;
 import com.cyr1en.flatdb.types.SQLTypePair;
 import com.cyr1en.flatdb.types.TypeMap;
 import com.cyr1en.flatdb.util.FastStrings;
 import lombok.Getter;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,6 +57,33 @@ public class DatabaseBuilder {
   @Getter private String driverName;
   @Getter private String databasePrefix;
   @Getter private List<Class> tables;
+  @Getter private Map<Class<?>, SQLTypePair> customTypes;
+  @Getter private PoolConfig poolConfig;
+  @Getter private PoolConfig readPoolConfig;
+  @Getter private long readYourWritesMillis;
+  @Getter private long queryTimeoutMillis;
+  @Getter private int batchSize;
+  @Getter private int fetchSize;
+  @Getter private ExecutorService asyncExecutor;
+  @Getter private int asyncThreads;
+  @Getter private int asyncMaxPending;
+  @Getter private BackpressurePolicy asyncBackpressure;
+  @Getter private boolean writeBehind;
+  @Getter private int writeBehindMaxBatch;
+  @Getter private long writeBehindMaxDelayMillis;
+  @Getter private int writeBehindCapacity;
+  @Getter private Map<Class<?>, CacheSpec> tableCaches;
+  @Getter private long resultCacheBytes;
+  @Getter private int initParallelism;
+  @Getter private boolean schemaFingerprints;
+  @Getter private List<DatabaseListener> listeners;
+  @Getter private boolean statementMetrics;
+  @Getter private SlowQueryLogConfig slowQueryLog;
+  @Getter private BackupConfig backupConfig;
+  @Getter private Path restoreFrom;
+  @Getter private StorageMode storageMode;
+  @Getter private long checkpointIntervalMillis;
+  @Getter private TransactionConfig transactionConfig;
 
   private String connectionURL;
 
@@ -53,6 +93,24 @@ public class DatabaseBuilder {
     connectionURL = "jdbc:%s:%s";
     databasePrefix = "flatdb_";
     tables = new ArrayList<>();
+    customTypes = new HashMap<>();
+    poolConfig = new PoolConfig();
+    readYourWritesMillis = 0;
+    batchSize = 1000;
+    fetchSize = 0;
+    asyncThreads = Runtime.getRuntime().availableProcessors();
+    asyncMaxPending = 10_000;
+    asyncBackpressure = BackpressurePolicy.REJECT;
+    writeBehind = false;
+    tableCaches = new HashMap<>();
+    resultCacheBytes = 0;
+    initParallelism = 1;
+    schemaFingerprints = false;
+    listeners = new ArrayList<>();
+    statementMetrics = false;
+    storageMode = StorageMode.FILE;
+    checkpointIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+    transactionConfig = new TransactionConfig();
     tryDefaultDrivers();
   }
 
@@ -78,16 +136,298 @@ public class DatabaseBuilder {
     return this;
   }
 
+  /**
+   * Map java types to SQL types for this database only. Types that aren't mapped here fall back
+   * to the {@link TypeMap#global()} map.
+   */
   public DatabaseBuilder addCustomTypes(Map<Class<?>, SQLTypePair> customTypes) {
-    TypeMap.addCustomType(customTypes);
+    customTypes.forEach(this.customTypes::putIfAbsent);
     return this;
   }
 
   public DatabaseBuilder addCustomType(Class<?> javaClass, SQLTypePair sqlTypePair) {
-    TypeMap.addCustomType(javaClass, sqlTypePair);
+    customTypes.putIfAbsent(javaClass, sqlTypePair);
     return this;
   }
 
+  public DatabaseBuilder setMinPoolSize(int minPoolSize) {
+    poolConfig.setMinSize(minPoolSize);
+    return this;
+  }
+
+  public DatabaseBuilder setMaxPoolSize(int maxPoolSize) {
+    poolConfig.setMaxSize(maxPoolSize);
+    return this;
+  }
+
+  public DatabaseBuilder setAcquireTimeout(long timeout, TimeUnit unit) {
+    poolConfig.setAcquireTimeout(timeout, unit);
+    return this;
+  }
+
+  public DatabaseBuilder setIdleTimeout(long timeout, TimeUnit unit) {
+    poolConfig.setIdleTimeout(timeout, unit);
+    return this;
+  }
+
+  public DatabaseBuilder setValidationQuery(String validationQuery) {
+    poolConfig.setValidationQuery(validationQuery);
+    return this;
+  }
+
+  public DatabaseBuilder setStatementCacheSize(int statementCacheSize) {
+    poolConfig.setStatementCacheSize(statementCacheSize);
+    return this;
+  }
+
+  /**
+   * Run queries on a pool of read-only connections of their own, so long reads don't hold on to
+   * the connections that updates need. Updates, transactions and {@link Database#getConnection()}
+   * keep using the main pool.
+   *
+   * @see Database#getReadPoolMetrics()
+   */
+  public DatabaseBuilder setReadPool(PoolConfig readPoolConfig) {
+    this.readPoolConfig = readPoolConfig.setReadOnly(true);
+    return this;
+  }
+
+  /**
+   * Run queries on up to maxSize read-only connections, with the default {@link PoolConfig} for
+   * everything else.
+   */
+  public DatabaseBuilder enableReadPool(int maxSize) {
+    return setReadPool(new PoolConfig().setMaxSize(maxSize));
+  }
+
+  /**
+   * Once a thread used a connection of the main pool, keep running its queries on the main pool
+   * for this long, so it reads its own writes even if the read connections lag behind.
+   */
+  public DatabaseBuilder setReadYourWrites(long window, TimeUnit unit) {
+    this.readYourWritesMillis = Math.max(0, unit.toMillis(window));
+    return this;
+  }
+
+  /**
+   * Stop every statement that runs longer than the timeout, unless the call set a timeout of
+   * its own. The timeout is applied with {@link java.sql.Statement#setQueryTimeout(int)}, so it
+   * is rounded up to whole seconds. 0, the default, lets statements run as long as they take.
+   */
+  public DatabaseBuilder setQueryTimeout(long timeout, TimeUnit unit) {
+    this.queryTimeoutMillis = Math.max(0, unit.toMillis(timeout));
+    return this;
+  }
+
+  /**
+   * Set how many rows {@link FlatTable#insertAll(java.util.Collection)} and
+   * {@link FlatTable#updateAll(java.util.Collection)} send and commit at once.
+   */
+  public DatabaseBuilder setBatchSize(int batchSize) {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("The batch size must be at least 1!");
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * Set the JDBC fetch size hint for streamed queries. 0 leaves it up to the driver.
+   */
+  public DatabaseBuilder setFetchSize(int fetchSize) {
+    if (fetchSize < 0)
+      throw new IllegalArgumentException("The fetch size cannot be negative!");
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Run asynchronous calls on this executor instead of creating one.
+   *
+   * <p>The executor isn't shut down when the database is closed.</p>
+   */
+  public DatabaseBuilder setAsyncExecutor(ExecutorService asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+    return this;
+  }
+
+  /**
+   * Set how many platform threads run asynchronous calls when no executor was set.
+   * This is ignored on Java 21 and newer, where every call gets a virtual thread.
+   */
+  public DatabaseBuilder setAsyncThreads(int asyncThreads) {
+    if (asyncThreads < 1)
+      throw new IllegalArgumentException("There must be at least 1 async thread!");
+    this.asyncThreads = asyncThreads;
+    return this;
+  }
+
+  /**
+   * Limit how many asynchronous calls can be pending, and choose what happens to calls over the limit.
+   */
+  public DatabaseBuilder setAsyncMaxPending(int asyncMaxPending, BackpressurePolicy policy) {
+    if (asyncMaxPending < 1)
+      throw new IllegalArgumentException("The async queue must allow at least 1 pending call!");
+    this.asyncMaxPending = asyncMaxPending;
+    this.asyncBackpressure = policy;
+    return this;
+  }
+
+  /**
+   * Commit {@link Database#enqueueUpdate(String, Object...)} calls in groups on a single writer thread.
+   *
+   * <p>A group is committed once it has maxBatch statements or its oldest statement waited
+   * for maxDelay, whichever comes first. Enqueueing blocks while capacity updates are waiting.</p>
+   */
+  public DatabaseBuilder enableWriteBehind(int maxBatch, long maxDelay, TimeUnit unit, int capacity) {
+    if (maxBatch < 1)
+      throw new IllegalArgumentException("A write-behind group must have at least 1 statement!");
+    if (capacity < maxBatch)
+      throw new IllegalArgumentException("The write-behind queue must fit at least one group!");
+    this.writeBehind = true;
+    this.writeBehindMaxBatch = maxBatch;
+    this.writeBehindMaxDelayMillis = Math.max(0, unit.toMillis(maxDelay));
+    this.writeBehindCapacity = capacity;
+    return this;
+  }
+
+  /**
+   * Cache the rows of a table by primary key. This overrides the cache attributes of the class' {@link Table}.
+   *
+   * @see FlatTable#enableCache(CacheSpec)
+   */
+  public DatabaseBuilder setTableCache(Class<?> tableClass, CacheSpec spec) {
+    tableCaches.put(tableClass, spec);
+    return this;
+  }
+
+  /**
+   * Cache the results of SELECT queries run through {@link Database#executeQuery(String, Object...)}.
+   *
+   * <p>Cached results are dropped when an update touches a table they read.</p>
+   *
+   * @param maximumBytes roughly how much memory the cached results may take up.
+   */
+  public DatabaseBuilder enableResultCache(long maximumBytes) {
+    if (maximumBytes < 1)
+      throw new IllegalArgumentException("The result cache must be allowed to use some memory!");
+    this.resultCacheBytes = maximumBytes;
+    return this;
+  }
+
+  /**
+   * Set how many tables are initialized at the same time when the database is built.
+   *
+   * <p>Above 1, tables are read and created on a fork join pool and every table's DDL runs on
+   * its own pooled connection, so the pool should allow that many connections.</p>
+   *
+   * @see TableProcessor#processAll(List, int)
+   */
+  public DatabaseBuilder setInitParallelism(int initParallelism) {
+    if (initParallelism < 1)
+      throw new IllegalArgumentException("The init parallelism must be at least 1!");
+    this.initParallelism = initParallelism;
+    return this;
+  }
+
+  /**
+   * Store a fingerprint of every table's schema in the database, and skip the tables whose
+   * fingerprint didn't change on the next startup.
+   *
+   * <p>Only enable this if the tables are never altered or dropped outside of FlatDB.</p>
+   */
+  public DatabaseBuilder enableSchemaFingerprints() {
+    this.schemaFingerprints = true;
+    return this;
+  }
+
+  /**
+   * Register a listener that is told about every statement the database executes.
+   */
+  public DatabaseBuilder addListener(DatabaseListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Keep latency histograms per statement and per table, which can be read with {@link Database#getMetrics()}.
+   */
+  public DatabaseBuilder enableStatementMetrics() {
+    this.statementMetrics = true;
+    return this;
+  }
+
+  /**
+   * Log statements that are slower than the config's threshold, with their parameters and plan.
+   */
+  public DatabaseBuilder setSlowQueryLog(SlowQueryLogConfig slowQueryLog) {
+    this.slowQueryLog = slowQueryLog;
+    return this;
+  }
+
+  /**
+   * Log statements that take at least the given time, using the default {@link SlowQueryLogConfig}
+   * for everything else.
+   */
+  public DatabaseBuilder setSlowQueryThreshold(long threshold, TimeUnit unit) {
+    if (slowQueryLog == null) slowQueryLog = new SlowQueryLogConfig();
+    slowQueryLog.setThreshold(threshold, unit);
+    return this;
+  }
+
+  /**
+   * Take scheduled backups and track how much backups slow down other statements, see
+   * {@link Database#getBackupMetrics()}. Without this, statements aren't timed for the backup
+   * metrics, so a config without an interval is needed to track manual backups.
+   */
+  public DatabaseBuilder setBackups(BackupConfig backupConfig) {
+    this.backupConfig = backupConfig;
+    return this;
+  }
+
+  /**
+   * Replace the database files with a backup that was taken with {@link Database#backup(Path)}
+   * when the database is built. The database must not be open anywhere else at that time.
+   */
+  public DatabaseBuilder restore(Path backup) {
+    this.restoreFrom = backup;
+    return this;
+  }
+
+  /**
+   * Set the isolation and retries of {@link Database#inTransaction(TransactionWork)}.
+   */
+  public DatabaseBuilder setTransactionConfig(TransactionConfig transactionConfig) {
+    this.transactionConfig = transactionConfig;
+    return this;
+  }
+
+  /**
+   * Choose where an H2 database keeps its data. Every mode besides {@link StorageMode#FILE}
+   * needs the H2 driver.
+   */
+  public DatabaseBuilder setStorageMode(StorageMode storageMode) {
+    this.storageMode = storageMode;
+    return this;
+  }
+
+  /**
+   * Set how often a {@link StorageMode#MEMORY_WITH_PERSIST} database writes its snapshot.
+   * 0 only writes it when the database is closed.
+   */
+  public DatabaseBuilder setCheckpointInterval(long interval, TimeUnit unit) {
+    if (interval < 0)
+      throw new IllegalArgumentException("The checkpoint interval cannot be negative!");
+    this.checkpointIntervalMillis = unit.toMillis(interval);
+    return this;
+  }
+
+  /**
+   * The file a {@link StorageMode#MEMORY_WITH_PERSIST} database is loaded from and checkpointed to.
+   */
+  public Path getSnapshotPath() {
+    return Paths.get(path.split(";", 2)[0] + ".snapshot.zip");
+  }
+
   private void tryDriverName(String driverName) {
     try {
       Class.forName(driverName).newInstance();
@@ -98,12 +438,38 @@ public class DatabaseBuilder {
   }
 
   public String getConnectionURL() {
-    return String.format(connectionURL, driverName, path);
+    return String.format(connectionURL, driverName, storagePath());
+  }
+
+  private String storagePath() {
+    switch (storageMode) {
+      case MEMORY:
+      case MEMORY_WITH_PERSIST:
+        String[] parts = path.split(";", 2);
+        return "mem:" + parts[0] + ";DB_CLOSE_DELAY=-1" + (parts.length > 1 ? ";" + parts[1] : "");
+      case NIO_MAPPED:
+        return "nioMapped:" + path;
+      default:
+        return path;
+    }
   }
 
   public Database build() throws SQLException {
     if(FastStrings.isBlank(driverName)) throw new SQLException("The driver name was left empty!");
+    if (storageMode != StorageMode.FILE && !driverName.equalsIgnoreCase("h2"))
+      throw new SQLException("The storage mode " + storageMode + " needs the H2 driver!");
     connectionURL = getConnectionURL();
+    if (queryTimeoutMillis > 0) {
+      poolConfig.setQueryTimeout(queryTimeoutMillis, TimeUnit.MILLISECONDS);
+      if (readPoolConfig != null) readPoolConfig.setQueryTimeout(queryTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    if (restoreFrom != null) {
+      try {
+        BackupManager.restore(restoreFrom, driverName, path);
+      } catch (IOException e) {
+        throw new SQLException("Could not restore the backup " + restoreFrom + "!", e);
+      }
+    }
     return new FlatDatabase(this);
   }
 }
@@ -24,76 +24,490 @@
 
 package com.cyr1en.flatdb;
 
+import com.cyr1en.flatdb.backup.BackupManager;
+import com.cyr1en.flatdb.backup.BackupMetrics;
+import com.cyr1en.flatdb.cache.QueryResultCache;
+import com.cyr1en.flatdb.concurrent.AsyncExecutor;
+import com.cyr1en.flatdb.mapper.RowMapper;
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.SlowQueryLog;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.metrics.StatementMetrics;
+import com.cyr1en.flatdb.pool.ConnectionPool;
+import com.cyr1en.flatdb.pool.PoolMetrics;
+import com.cyr1en.flatdb.types.TypeMap;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
 import lombok.Getter;
 import org.intellij.lang.annotations.Language;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FlatDatabase implements Database {
 
+  private static RowSetFactory rowSetFactory;
+
   @Getter private String db_prefix;
-  @Getter private Connection connection;
-  @Getter private Map<Class<?>,FlatTable> tables;
-  private Statement statement;
+  @Getter private Map<Class<?>, FlatTable<?>> tables;
+  @Getter private int batchSize;
+  @Getter private int fetchSize;
+  @Getter private TypeMap typeMap;
+  @Getter private String driverName;
+  @Getter private StorageMode storageMode;
+  private static final int DEFAULT_TIMEOUT = -1;
+
+  private ConnectionPool pool;
+  private ConnectionPool readPool;
+  private long readYourWritesNanos;
+  private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+  private AsyncExecutor asyncExecutor;
+  private WriteBehindQueue writeBehind;
+  private QueryResultCache resultCache;
+  private StatementMetrics metrics;
+  private SlowQueryLog slowQueryLog;
+  private BackupManager backups;
+  private MemoryCheckpointer checkpointer;
+  private TransactionConfig transactionConfig;
+  private final ThreadLocal<Transaction> transactions = new ThreadLocal<>();
+  private Instrumentation instrumentation;
 
   FlatDatabase(DatabaseBuilder builder) throws SQLException {
-    this.connection = DriverManager.getConnection(builder.getConnectionURL());
-    this.statement = connection.createStatement();
+    this.pool = new ConnectionPool(builder.getConnectionURL(), builder.getPoolConfig());
     this.db_prefix = builder.getDatabasePrefix();
-    this.tables = new HashMap<>();
-    initializeTables(builder.getTables());
+    this.batchSize = builder.getBatchSize();
+    this.fetchSize = builder.getFetchSize();
+    this.driverName = builder.getDriverName();
+    this.storageMode = builder.getStorageMode();
+    this.transactionConfig = builder.getTransactionConfig();
+    this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(builder.getReadYourWritesMillis());
+    this.typeMap = new TypeMap(TypeMap.global());
+    typeMap.register(builder.getCustomTypes(), true);
+    this.tables = new LinkedHashMap<>();
+    this.asyncExecutor = new AsyncExecutor(builder.getAsyncExecutor(), builder.getAsyncThreads(),
+            builder.getAsyncMaxPending(), builder.getAsyncBackpressure());
+    try {
+      if (builder.getReadPoolConfig() != null)
+        this.readPool = new ConnectionPool(builder.getConnectionURL(), builder.getReadPoolConfig());
+      if (storageMode == StorageMode.MEMORY_WITH_PERSIST) {
+        this.checkpointer = new MemoryCheckpointer(pool, builder.getSnapshotPath(),
+                builder.getCheckpointIntervalMillis());
+        checkpointer.load();
+      }
+      this.backups = new BackupManager(builder.getConnectionURL(), driverName, builder.getBackupConfig());
+      this.instrumentation = new Instrumentation(listeners(builder), db_prefix, this::failed);
+      if (builder.getResultCacheBytes() > 0)
+        this.resultCache = new QueryResultCache(db_prefix, builder.getResultCacheBytes());
+      if (builder.isWriteBehind())
+        this.writeBehind = new WriteBehindQueue(pool, instrumentation, builder.getWriteBehindMaxBatch(),
+                builder.getWriteBehindMaxDelayMillis(), builder.getWriteBehindCapacity());
+      initializeTables(builder.getTables(), builder.getInitParallelism(), builder.isSchemaFingerprints());
+      builder.getTableCaches().forEach((c, spec) -> {
+        if (tables.containsKey(c)) tables.get(c).enableCache(spec);
+      });
+    } catch (SQLException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private List<DatabaseListener> listeners(DatabaseBuilder builder) throws SQLException {
+    List<DatabaseListener> listeners = new ArrayList<>(builder.getListeners());
+    if (builder.isStatementMetrics()) {
+      this.metrics = new StatementMetrics();
+      listeners.add(metrics);
+    }
+    if (builder.getSlowQueryLog() != null) {
+      try {
+        this.slowQueryLog = new SlowQueryLog(builder.getSlowQueryLog(), this, driverName);
+      } catch (IOException e) {
+        throw new SQLException("Could not open the slow query log!", e);
+      }
+      listeners.add(slowQueryLog);
+    }
+    if (builder.getBackupConfig() != null) listeners.add(backups);
+    return listeners;
   }
 
-  private void initializeTables(List<Class> tableClasses) {
-    TableProcessor processor = new TableProcessor(this);
-    for (Class c : tableClasses)
-      tables.put(c, processor.process(c));
+  private void initializeTables(List<Class> tableClasses, int parallelism, boolean fingerprints) throws SQLException {
+    tables.putAll(new TableProcessor(this, fingerprints).processAll(tableClasses, parallelism));
   }
 
+  /**
+   * Executes a query and copies its result into a disconnected {@link CachedRowSet}.
+   *
+   * <p>The leased connection goes back to the pool before this method returns, so the
+   * returned {@link ResultSet} stays usable without holding on to a connection.</p>
+   */
   @Override
-  public Optional<ResultSet> executeQuery(@Language("SQL") String query, String... replacements) {
+  public Optional<ResultSet> executeQuery(@Language("SQL") String query, Object... params) {
+    return executeQuery(DEFAULT_TIMEOUT, query, params);
+  }
+
+  @Override
+  public Optional<ResultSet> executeQuery(long timeout, TimeUnit unit, @Language("SQL") String query, Object... params) {
+    return executeQuery(toSeconds(timeout, unit), query, params);
+  }
+
+  private Optional<ResultSet> executeQuery(int timeout, String query, Object... params) {
     try {
-      Statement statement = connection.createStatement();
-      String fQuery = String.format(query, (Object) replacements);
-      return Optional.of(statement.executeQuery(fQuery));
+      return Optional.of(query(query, params, timeout, null));
     } catch (SQLException e) {
+      failed(e);
       e.printStackTrace();
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public QueryHandle<ResultSet> executeQueryAsync(@Language("SQL") String query, Object... params) {
+    return executeQueryAsync(DEFAULT_TIMEOUT, query, params);
+  }
+
+  @Override
+  public QueryHandle<ResultSet> executeQueryAsync(long timeout, TimeUnit unit, @Language("SQL") String query,
+                                                  Object... params) {
+    return executeQueryAsync(toSeconds(timeout, unit), query, params);
+  }
+
+  private QueryHandle<ResultSet> executeQueryAsync(int timeout, String query, Object... params) {
+    QueryHandle<ResultSet> handle = new QueryHandle<>();
+    return asyncExecutor.submit(() -> query(query, params, timeout, handle), handle);
+  }
+
+  ResultSet query(String query, Object... params) throws SQLException {
+    return query(query, params, DEFAULT_TIMEOUT, null);
+  }
+
+  private ResultSet query(String query, Object[] params, int timeout, QueryHandle<?> handle) throws SQLException {
+    if (resultCache != null && transactions.get() == null)
+      return resultCache.get(query, params, () -> load(query, params, timeout, handle));
+    return load(query, params, timeout, handle);
+  }
+
+  private CachedRowSet load(String query, Object[] params, int timeout, QueryHandle<?> handle) throws SQLException {
+    return instrumentation.record(query, params, StatementKind.QUERY, () -> {
+      try (Connection connection = readConnection();
+           PreparedStatement statement = prepare(connection, query, params)) {
+        return run(statement, timeout, handle, () -> {
+          try (ResultSet rs = statement.executeQuery()) {
+            CachedRowSet cached = getRowSetFactory().createCachedRowSet();
+            cached.populate(rs);
+            return cached;
+          }
+        });
+      }
+    }, CachedRowSet::size);
+  }
+
+  /**
+   * Run a statement with a timeout other than the default, and let the handle cancel it.
+   *
+   * <p>Some drivers, like H2, keep the timeout per connection instead of per statement, so
+   * the statement's previous timeout is put back before it is closed. That is the default of
+   * the pool it was leased from, which differs between the main and the read pool.</p>
+   *
+   * @param timeout in seconds, or {@link #DEFAULT_TIMEOUT} to leave the statement as it is.
+   * @param handle may be null.
+   */
+  private <R> R run(Statement statement, int timeout, QueryHandle<?> handle, Instrumentation.SqlCall<R> call)
+          throws SQLException {
+    if (timeout == DEFAULT_TIMEOUT && handle == null) return call.call();
+    int previousTimeout = timeout == DEFAULT_TIMEOUT ? DEFAULT_TIMEOUT : statement.getQueryTimeout();
+    try {
+      if (timeout != DEFAULT_TIMEOUT) statement.setQueryTimeout(timeout);
+      if (handle != null) handle.attach(statement);
+      return call.call();
+    } catch (SQLException e) {
+      throw handle == null ? e : handle.translate(e);
     } finally {
+      if (handle != null) handle.detach();
+      if (timeout != DEFAULT_TIMEOUT) statement.setQueryTimeout(previousTimeout);
+    }
+  }
+
+  private static int toSeconds(long timeout, TimeUnit unit) {
+    long millis = Math.max(0, unit.toMillis(timeout));
+    return (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+  }
+
+  /**
+   * Lazily streams the result of a query.
+   *
+   * <p>The statement and its leased connection stay open until the last row was read or
+   * the stream is closed. With H2, the query is run with LAZY_QUERY_EXECUTION so rows are
+   * produced while they are consumed instead of being materialized up front. Inside a
+   * transaction it isn't, because H2 commits the open transaction on every SET command.</p>
+   */
+  @Override
+  public <T> Stream<T> stream(@Language("SQL") String query, RowMapper<T> mapper, Object... params) {
+    Connection connection = null;
+    PreparedStatement statement = null;
+    boolean lazy = !isInTransaction();
+    try {
+      connection = readConnection();
+      final Connection leased = connection;
+      if (lazy) setLazyExecution(leased, true);
+      PreparedStatement prepared = prepare(leased, query, params);
+      statement = prepared;
+      statement.setFetchSize(fetchSize);
+      ResultSet rs = instrumentation.record(query, params, StatementKind.QUERY, prepared::executeQuery, r -> -1);
+      ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(leased, statement, rs, mapper,
+              () -> {
+                if (lazy) setLazyExecution(leased, false);
+              });
+      return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    } catch (SQLException e) {
+      failed(e);
+      e.printStackTrace();
       try {
-        if (!statement.isClosed()) {
-          statement.close();
+        if (statement != null) statement.close();
+        if (connection != null) {
+          if (lazy) setLazyExecution(connection, false);
+          connection.close();
         }
-      } catch (SQLException e) {
-        e.printStackTrace();
+      } catch (SQLException ex) {
+        ex.printStackTrace();
       }
     }
-    return Optional.empty();
+    return Stream.empty();
+  }
+
+  private void setLazyExecution(Connection connection, boolean lazy) {
+    if (!driverName.equalsIgnoreCase("h2")) return;
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? 1 : 0));
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
   }
 
   @Override
-  public int executeUpdate(@Language("SQL") String sql, String... replacements) {
+  public int executeUpdate(@Language("SQL") String sql, Object... params) {
+    return executeUpdate(DEFAULT_TIMEOUT, sql, params);
+  }
+
+  @Override
+  public int executeUpdate(long timeout, TimeUnit unit, @Language("SQL") String sql, Object... params) {
+    return executeUpdate(toSeconds(timeout, unit), sql, params);
+  }
+
+  private int executeUpdate(int timeout, String sql, Object... params) {
     try {
-      Statement statement = connection.createStatement();
-      String fSql = String.format(sql, (Object) replacements);
-      return statement.executeUpdate(fSql);
+      return update(sql, params, timeout, null);
     } catch (SQLException e) {
+      failed(e);
       e.printStackTrace();
+    }
+    return 0;
+  }
+
+  @Override
+  public QueryHandle<Integer> executeUpdateAsync(@Language("SQL") String sql, Object... params) {
+    return executeUpdateAsync(DEFAULT_TIMEOUT, sql, params);
+  }
+
+  @Override
+  public QueryHandle<Integer> executeUpdateAsync(long timeout, TimeUnit unit, @Language("SQL") String sql,
+                                                 Object... params) {
+    return executeUpdateAsync(toSeconds(timeout, unit), sql, params);
+  }
+
+  private QueryHandle<Integer> executeUpdateAsync(int timeout, String sql, Object... params) {
+    QueryHandle<Integer> handle = new QueryHandle<>();
+    return asyncExecutor.submit(() -> update(sql, params, timeout, handle), handle);
+  }
+
+  @Override
+  public CompletableFuture<Integer> enqueueUpdate(@Language("SQL") String sql, Object... params) {
+    if (writeBehind == null) return executeUpdateAsync(sql, params);
+    CompletableFuture<Integer> committed = writeBehind.submit(sql, params);
+    return resultCache == null ? committed : committed.whenComplete((count, e) -> resultCache.invalidate(sql));
+  }
+
+  @Override
+  public CompletableFuture<Void> flush() {
+    if (writeBehind == null) return CompletableFuture.completedFuture(null);
+    return writeBehind.flush();
+  }
+
+  int update(String sql, Object... params) throws SQLException {
+    return update(sql, params, DEFAULT_TIMEOUT, null);
+  }
+
+  private int update(String sql, Object[] params, int timeout, QueryHandle<?> handle) throws SQLException {
+    try (Connection connection = connection();
+         PreparedStatement statement = prepare(connection, sql, params)) {
+      return instrumentation.record(sql, params, StatementKind.UPDATE,
+              () -> run(statement, timeout, handle, statement::executeUpdate), n -> n);
     } finally {
+      if (resultCache != null) invalidate(() -> resultCache.invalidate(sql));
+    }
+  }
+
+  @Override
+  public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+    return inTransaction(transactionConfig, work);
+  }
+
+  @Override
+  public <T> T inTransaction(TransactionConfig config, TransactionWork<T> work) throws SQLException {
+    Transaction current = transactions.get();
+    if (current != null) return current.nested(work);
+    for (int attempt = 1; ; attempt++) {
       try {
-        if (!statement.isClosed()) {
-          statement.close();
-        }
+        return transaction(config, work, attempt);
       } catch (SQLException e) {
-        e.printStackTrace();
+        if (attempt > config.getMaxRetries() || !Transaction.isRetryable(e)) throw e;
+        try {
+          Thread.sleep(config.backoffMillis(attempt));
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
       }
     }
-    return 0;
+  }
+
+  private <T> T transaction(TransactionConfig config, TransactionWork<T> work, int attempt) throws SQLException {
+    try (Connection connection = pool.getConnection()) {
+      int isolation = connection.getTransactionIsolation();
+      if (config.getIsolation() != TransactionConfig.DEFAULT_ISOLATION)
+        connection.setTransactionIsolation(config.getIsolation());
+      connection.setAutoCommit(false);
+      Transaction transaction = new Transaction(this, connection, attempt);
+      transactions.set(transaction);
+      try {
+        T result = work.run(transaction);
+        transaction.commit();
+        return result;
+      } catch (SQLException | RuntimeException | Error e) {
+        transaction.rollback(e);
+        throw e;
+      } finally {
+        transactions.remove();
+        transaction.end();
+        if (config.getIsolation() != TransactionConfig.DEFAULT_ISOLATION)
+          restoreIsolation(connection, isolation);
+      }
+    }
+  }
+
+  private void restoreIsolation(Connection connection, int isolation) {
+    try {
+      connection.setTransactionIsolation(isolation);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * @return the connection of this thread's transaction, or a connection from the pool.
+   */
+  private Connection connection() throws SQLException {
+    Transaction transaction = transactions.get();
+    if (transaction != null) return transaction.getConnection();
+    if (readPool != null && readYourWritesNanos > 0) lastWrite.get()[0] = System.nanoTime();
+    return pool.getConnection();
+  }
+
+  /**
+   * @return the connection of this thread's transaction, or a connection for a query. That is a
+   * connection from the read pool, unless there is none or this thread used the main pool recently.
+   */
+  Connection readConnection() throws SQLException {
+    Transaction transaction = transactions.get();
+    if (transaction != null) return transaction.getConnection();
+    if (readPool == null) return pool.getConnection();
+    if (readYourWritesNanos > 0) {
+      long last = lastWrite.get()[0];
+      if (last != 0 && System.nanoTime() - last < readYourWritesNanos) return pool.getConnection();
+    }
+    return readPool.getConnection();
+  }
+
+  static Connection readConnection(Database database) throws SQLException {
+    return database instanceof FlatDatabase ? ((FlatDatabase) database).readConnection() : database.getConnection();
+  }
+
+  private void failed(SQLException e) {
+    Transaction transaction = transactions.get();
+    if (transaction != null) transaction.failed(e);
+  }
+
+  /**
+   * Run a cache invalidation now and, within a transaction, again once it ended, so that
+   * other threads can't keep what they cached before the transaction committed.
+   */
+  void invalidate(Runnable invalidation) {
+    invalidation.run();
+    Transaction transaction = transactions.get();
+    if (transaction != null) transaction.onEnd(invalidation);
+  }
+
+  boolean isInTransaction() {
+    return transactions.get() != null;
+  }
+
+  static void invalidate(Database database, Runnable invalidation) {
+    if (database instanceof FlatDatabase) ((FlatDatabase) database).invalidate(invalidation);
+    else invalidation.run();
+  }
+
+  static boolean isInTransaction(Database database) {
+    return database instanceof FlatDatabase && ((FlatDatabase) database).isInTransaction();
+  }
+
+  @Override
+  public void invalidateResultCache(String... tableNames) {
+    if (resultCache == null) return;
+    ImmutableSet.Builder<String> tables = ImmutableSet.builder();
+    for (String tableName : tableNames)
+      tables.add(tableName.toLowerCase(Locale.ROOT));
+    ImmutableSet<String> invalidated = tables.build();
+    invalidate(() -> resultCache.invalidateTables(invalidated));
+  }
+
+  @Override
+  public Optional<CacheStats> getResultCacheStats() {
+    return resultCache == null ? Optional.empty() : Optional.of(resultCache.getStats());
+  }
+
+  @Override
+  public Optional<StatementMetrics> getMetrics() {
+    return Optional.ofNullable(metrics);
   }
 
+  @Override
+  public void backup(Path file) throws SQLException {
+    backups.backup(file);
+  }
+
+  @Override
+  public BackupMetrics getBackupMetrics() {
+    return backups.getMetrics();
+  }
+
+  Instrumentation getInstrumentation() {
+    return instrumentation;
+  }
+
+  /**
+   * The returned {@link DatabaseMetaData} belongs to a pooled connection that has
+   * already been given back, so it should only be used for short lookups.
+   */
   @Override
   public Optional<DatabaseMetaData> getMetaData() {
-    try {
+    try (Connection connection = pool.getConnection()) {
       return Optional.of(connection.getMetaData());
     } catch (SQLException e) {
       e.printStackTrace();
@@ -101,18 +515,81 @@ public class FlatDatabase implements Database {
     return Optional.empty();
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> FlatTable<T> getTable(Class<T> tableClass) {
+    return (FlatTable<T>) tables.get(tableClass);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return connection();
+  }
+
+  @Override
+  public PoolMetrics getPoolMetrics() {
+    return pool.getMetrics();
+  }
+
+  @Override
+  public Optional<PoolMetrics> getReadPoolMetrics() {
+    return readPool == null ? Optional.empty() : Optional.of(readPool.getMetrics());
+  }
+
   public boolean tableExists(String tableName) {
     List<String> tableNames = new ArrayList<>();
-    getMetaData().ifPresent(dmd -> {
-      try {
-        ResultSet rs = dmd.getTables(null, null, null, new String[]{"TABLE"});
-        while (rs.next())
-          tableNames.add(rs.getString("TABLE_NAME"));
-      } catch (SQLException e) {
-        e.printStackTrace();
-      }
-    });
+    try (Connection connection = pool.getConnection();
+         ResultSet rs = connection.getMetaData().getTables(null, null, null, new String[]{"TABLE"})) {
+      while (rs.next())
+        tableNames.add(rs.getString("TABLE_NAME"));
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
     return tableNames.stream().anyMatch(s -> s.equalsIgnoreCase(tableName));
   }
 
+  @Override
+  public void close() {
+    if (writeBehind != null) writeBehind.close();
+    asyncExecutor.close();
+    if (slowQueryLog != null) slowQueryLog.close();
+    if (backups != null) backups.close();
+    if (checkpointer != null) checkpointer.close();
+    if (readPool != null) readPool.close();
+    if (storageMode.isInMemory()) shutdown();
+    pool.close();
+  }
+
+  private void shutdown() {
+    try (Connection connection = pool.getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Prepare a statement on a pooled connection and bind its parameters.
+   *
+   * <p>Pooled connections serve {@link Connection#prepareStatement(String)} from their
+   * statement cache, so this is cheap for SQL that has been seen before.</p>
+   */
+  static PreparedStatement prepare(Connection connection, String sql, Object... params) throws SQLException {
+    PreparedStatement statement = connection.prepareStatement(sql);
+    try {
+      for (int i = 0; i < params.length; i++)
+        statement.setObject(i + 1, params[i]);
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+    return statement;
+  }
+
+  private static synchronized RowSetFactory getRowSetFactory() throws SQLException {
+    if (rowSetFactory == null)
+      rowSetFactory = RowSetProvider.newFactory();
+    return rowSetFactory;
+  }
 }
@@ -24,22 +24,532 @@
 
 package com.cyr1en.flatdb;
 
+import com.cyr1en.flatdb.cache.CacheSpec;
+import com.cyr1en.flatdb.mapper.EntityMapper;
+import com.cyr1en.flatdb.mapper.EntityMappers;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+import com.cyr1en.flatdb.util.CsvReader;
+import com.cyr1en.flatdb.util.CsvWriter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.primitives.Primitives;
+import lombok.Getter;
 import org.intellij.lang.annotations.Language;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class FlatTable {
+public class FlatTable<T> {
 
-  private String tableName;
+  @Getter private String tableName;
+  @Getter private TableSchema<T> schema;
+  @Getter private int batchSize;
+  @Getter private boolean nativeCsv;
   private Database database;
+  private EntityMapper<T> mapper;
+  private String selectColumns;
+  private String insertSql;
+  private String findSql;
+  private int[] insertIndexes;
+  private volatile Cache<Object, T> cache;
+  private AtomicLong cacheGeneration;
+  private int keyIndex;
+  private Class<?> keyType;
+  private Instrumentation instrumentation;
+  private volatile KeyValueView<T> kv;
 
-  public FlatTable(String tableName, Database database) {
-    this.tableName = tableName;
+  public FlatTable(TableSchema<T> schema, Database database) {
+    this.tableName = schema.getTableName();
+    this.schema = schema;
     this.database = database;
+    this.batchSize = database.getBatchSize();
+    this.mapper = EntityMappers.forSchema(schema);
+    this.instrumentation = Instrumentation.of(database);
+    this.selectColumns = joinColumns(schema.getColumns(), "%s");
+    List<ColumnSchema> insertable = schema.getInsertableColumns();
+    this.insertSql = insertSql(insertable);
+    this.insertIndexes = insertable.stream().mapToInt(schema.getColumns()::indexOf).toArray();
+    this.cacheGeneration = new AtomicLong();
+    this.keyIndex = schema.getPrimaryKey().map(schema.getColumns()::indexOf).orElse(-1);
+    this.keyType = schema.getPrimaryKey().<Class<?>>map(c -> Primitives.wrap(c.getJavaType())).orElse(null);
+    this.findSql = schema.getPrimaryKey().map(c -> String.format("SELECT %s FROM %s WHERE %s = ?",
+            selectColumns, tableName, c.getName())).orElse(null);
+    this.nativeCsv = true;
   }
 
-  public Optional<ResultSet> executeQuery(@Language("SQL") String query, String... replacements) {
-   return null;
+  public Optional<ResultSet> executeQuery(@Language("SQL") String query, Object... params) {
+    return database.executeQuery(query, params);
+  }
+
+  /**
+   * Insert a single row.
+   *
+   * <p>Auto incrementing columns are left for the database to fill in.</p>
+   *
+   * @param row the row to insert.
+   * @return the number of inserted rows.
+   */
+  public int insert(T row) {
+    Object[] values = new Object[insertIndexes.length];
+    for (int i = 0; i < values.length; i++)
+      values[i] = mapper.get(row, insertIndexes[i]);
+    int inserted = database.executeUpdate(insertSql, values);
+    invalidate(row);
+    return inserted;
+  }
+
+  /**
+   * Find a row by its primary key.
+   *
+   * @param key value of the primary key column.
+   * @return the mapped row, or an empty {@link Optional} if there is no such row.
+   * @throws IllegalStateException if this table doesn't have a primary key.
+   */
+  public Optional<T> findById(Object key) {
+    requirePrimaryKey();
+    Object cacheKey = cacheKey(key);
+    Cache<Object, T> cache = this.cache;
+    if (cache != null) {
+      T cached = cache.getIfPresent(cacheKey);
+      if (cached != null) return Optional.of(cached);
+    }
+    long loadedAt = cacheGeneration.get();
+    T found = queryFirst(findSql, key);
+    if (found == null) return Optional.empty();
+    if (cache != null && !FlatDatabase.isInTransaction(database)) {
+      cache.put(cacheKey, found);
+      if (cacheGeneration.get() != loadedAt) cache.invalidate(cacheKey);
+    }
+    return Optional.of(found);
+  }
+
+  /**
+   * @return a view that reads and writes the rows of this table by primary key with as little
+   * overhead as possible.
+   * @throws IllegalStateException if this table doesn't have a primary key.
+   */
+  public KeyValueView<T> kv() {
+    KeyValueView<T> view = kv;
+    if (view == null) kv = view = new KeyValueView<>(this, database, mapper, instrumentation);
+    return view;
+  }
+
+  /**
+   * Cache the rows that {@link #findById(Object)} reads, keyed by their primary key.
+   *
+   * <p>Rows written through this table are evicted from the cache, but rows changed with
+   * plain SQL are not; call {@link #invalidateCache()} after such changes. A cached row is
+   * handed out as the same instance every time, so it shouldn't be modified in place.</p>
+   *
+   * @param spec size and expiry of the cache.
+   * @throws IllegalStateException if this table doesn't have a primary key.
+   */
+  public void enableCache(CacheSpec spec) {
+    requirePrimaryKey();
+    this.cache = spec.build();
+  }
+
+  public void disableCache() {
+    this.cache = null;
+  }
+
+  /**
+   * Evict every cached row.
+   */
+  public void invalidateCache() {
+    cacheGeneration.incrementAndGet();
+    Cache<Object, T> cache = this.cache;
+    if (cache != null) cache.invalidateAll();
+  }
+
+  /**
+   * @return hit and eviction statistics of the primary key cache, or an empty {@link Optional} if
+   * the cache isn't enabled.
+   */
+  public Optional<CacheStats> getCacheStats() {
+    Cache<Object, T> cache = this.cache;
+    return cache == null ? Optional.empty() : Optional.of(cache.stats());
+  }
+
+  boolean isCached(Object key) {
+    Cache<Object, T> cache = this.cache;
+    return cache != null && cache.getIfPresent(cacheKey(key)) != null;
+  }
+
+  private void invalidate(T row) {
+    if (cache == null || keyIndex < 0) return;
+    invalidateKey(mapper.get(row, keyIndex));
+  }
+
+  /**
+   * Evict a row from the cache, again once the current transaction ended, and make reads that
+   * started before the eviction skip caching what they read.
+   */
+  void invalidateKey(Object key) {
+    if (key == null) return;
+    Object cacheKey = cacheKey(key);
+    FlatDatabase.invalidate(database, () -> {
+      cacheGeneration.incrementAndGet();
+      Cache<Object, T> cache = this.cache;
+      if (cache != null) cache.invalidate(cacheKey);
+    });
+  }
+
+  /**
+   * Box a key as the primary key's own type, so {@code findById(1L)} and an int key read from
+   * a row hit the same entry.
+   */
+  private Object cacheKey(Object key) {
+    if (!(key instanceof Number) || keyType == null || keyType.isInstance(key)) return key;
+    Number number = (Number) key;
+    if (keyType == Integer.class) return number.intValue();
+    if (keyType == Long.class) return number.longValue();
+    if (keyType == Short.class) return number.shortValue();
+    if (keyType == Byte.class) return number.byteValue();
+    if (keyType == Double.class) return number.doubleValue();
+    if (keyType == Float.class) return number.floatValue();
+    return key;
+  }
+
+  /**
+   * @return every row of this table, mapped to the table's class.
+   */
+  public List<T> findAll() {
+    return query(String.format("SELECT %s FROM %s", selectColumns, tableName));
+  }
+
+  /**
+   * Lazily stream every row of this table.
+   *
+   * <p>See {@link Database#stream(String, com.cyr1en.flatdb.mapper.RowMapper, Object...)};
+   * the stream should be closed after use.</p>
+   */
+  public Stream<T> stream() {
+    return database.stream(String.format("SELECT %s FROM %s", selectColumns, tableName), mapper::read);
+  }
+
+  /**
+   * @return the first row of a query mapped straight from the result set, or null if there is none.
+   */
+  private T queryFirst(String sql, Object... params) {
+    try (Connection connection = FlatDatabase.readConnection(database);
+         PreparedStatement statement = FlatDatabase.prepare(connection, sql, params)) {
+      return instrumentation.record(sql, params, StatementKind.QUERY, () -> {
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next() ? mapper.read(rs) : null;
+        }
+      }, row -> row == null ? 0 : 1);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return null;
+  }
+
+  private List<T> query(String sql, Object... params) {
+    List<T> rows = new ArrayList<>();
+    try (Connection connection = FlatDatabase.readConnection(database);
+         PreparedStatement statement = FlatDatabase.prepare(connection, sql, params)) {
+      instrumentation.record(sql, params, StatementKind.QUERY, () -> {
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next())
+            rows.add(mapper.read(rs));
+        }
+        return rows;
+      }, List::size);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return rows;
+  }
+
+  /**
+   * Insert every row with JDBC batches.
+   *
+   * <p>The rows are split into chunks of {@link #getBatchSize()} rows and every chunk is
+   * committed in its own transaction. If a chunk fails, only that chunk is rolled back;
+   * the chunks before it stay committed.</p>
+   *
+   * @param rows the rows to insert.
+   * @return the number of inserted rows.
+   */
+  public int insertAll(Collection<? extends T> rows) {
+    List<ColumnSchema> columns = schema.getInsertableColumns();
+    return executeBatch(insertSql(columns), columns, rows);
+  }
+
+  /**
+   * Update every row by its primary key with JDBC batches.
+   *
+   * <p>Batching works the same way as in {@link #insertAll(Collection)}.</p>
+   *
+   * @param rows the rows to update.
+   * @return the number of updated rows.
+   * @throws IllegalStateException if this table doesn't have a primary key.
+   */
+  public int updateAll(Collection<? extends T> rows) {
+    ColumnSchema primaryKey = requirePrimaryKey();
+    List<ColumnSchema> columns = schema.getColumns().stream()
+            .filter(c -> !c.isPrimaryKey() && !c.isAutoIncrement())
+            .collect(Collectors.toList());
+    if (columns.isEmpty()) return 0;
+    String sql = String.format("UPDATE %s SET %s WHERE %s = ?", tableName,
+            joinColumns(columns, "%s = ?"), primaryKey.getName());
+    columns.add(primaryKey);
+    return executeBatch(sql, columns, rows);
+  }
+
+  public void setBatchSize(int batchSize) {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("The batch size must be at least 1!");
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Whether {@link #importCsv(Path, LongConsumer)} and {@link #exportCsv(Path, LongConsumer)} use H2's
+   * CSVREAD and CSVWRITE when the database is H2. Those read and write files where the database
+   * runs, so this should be disabled for an H2 server on another machine.
+   */
+  public void setNativeCsv(boolean nativeCsv) {
+    this.nativeCsv = nativeCsv;
+  }
+
+  public long importCsv(Path file) throws IOException, SQLException {
+    return importCsv(file, rows -> {});
+  }
+
+  /**
+   * Insert the rows of a CSV file.
+   *
+   * <p>The first line of the file names the columns, which are matched to the column names of
+   * this table ignoring case; columns that the file leaves out get their default value. The file
+   * is streamed and its rows are inserted like in {@link #insertAll(Collection)}, so only one
+   * batch is held in memory and every batch is committed in its own transaction. On H2, the file
+   * is loaded with CSVREAD in a single statement instead, see {@link #setNativeCsv(boolean)}.</p>
+   *
+   * @param progress called with the number of rows imported so far after every committed batch.
+   * @return the number of imported rows.
+   * @throws IOException if the file couldn't be read, names an unknown column or holds a value
+   *                     that doesn't fit its column.
+   * @throws SQLException if a batch failed. The batches before it stay committed.
+   */
+  public long importCsv(Path file, LongConsumer progress) throws IOException, SQLException {
+    try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+      List<String> header = reader.next();
+      if (header == null) return 0;
+      List<ColumnSchema> columns = new ArrayList<>();
+      for (String name : header)
+        columns.add(schema.getColumns().stream().filter(c -> c.getName().equalsIgnoreCase(name)).findFirst()
+                .orElseThrow(() -> new IOException("The table " + tableName + " doesn't have a column " + name + "!")));
+      try {
+        return useNativeCsv() ? csvRead(file, columns, progress) : insertCsv(reader, columns, progress);
+      } finally {
+        invalidateCache();
+        database.invalidateResultCache(tableName);
+      }
+    }
+  }
+
+  public long exportCsv(Path file) throws IOException, SQLException {
+    return exportCsv(file, rows -> {});
+  }
+
+  /**
+   * Write every row of this table to a CSV file, with a header line of the column names.
+   *
+   * <p>The rows are streamed from the database with its fetch size. On H2, the file is written
+   * with CSVWRITE instead, see {@link #setNativeCsv(boolean)}.</p>
+   *
+   * @param progress called with the number of rows exported so far after every
+   *                 {@link #getBatchSize()} rows.
+   * @return the number of exported rows.
+   */
+  public long exportCsv(Path file, LongConsumer progress) throws IOException, SQLException {
+    if (useNativeCsv()) return csvWrite(file, progress);
+    String sql = String.format("SELECT %s FROM %s", selectColumns, tableName);
+    List<ColumnSchema> columns = schema.getColumns();
+    try (Connection connection = FlatDatabase.readConnection(database);
+         PreparedStatement statement = connection.prepareStatement(sql);
+         CsvWriter writer = new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+      statement.setFetchSize(database.getFetchSize());
+      writer.write(columns.stream().map(ColumnSchema::getName).toArray());
+      Object[] values = new Object[columns.size()];
+      long total = instrumentation.record(sql, StatementKind.QUERY, () -> {
+        long rows = 0;
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            for (int i = 0; i < values.length; i++)
+              values[i] = rs.getObject(i + 1);
+            writer.write(values);
+            if (++rows % batchSize == 0) progress.accept(rows);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return rows;
+      }, n -> n);
+      if (total % batchSize != 0) progress.accept(total);
+      return total;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private boolean useNativeCsv() {
+    return nativeCsv && "h2".equalsIgnoreCase(database.getDriverName());
+  }
+
+  private long csvRead(Path file, List<ColumnSchema> columns, LongConsumer progress) throws SQLException {
+    String names = joinColumns(columns, "%s");
+    String sql = String.format("INSERT INTO %s (%s) SELECT %s FROM CSVREAD(%s, NULL, 'charset=UTF-8')",
+            tableName, names, names, quote(file.toAbsolutePath().toString()));
+    try (Connection connection = database.getConnection();
+         Statement statement = connection.createStatement()) {
+      long rows = instrumentation.record(sql, StatementKind.UPDATE, () -> statement.executeUpdate(sql), n -> n);
+      progress.accept(rows);
+      return rows;
+    }
+  }
+
+  private long csvWrite(Path file, LongConsumer progress) throws SQLException {
+    String sql = String.format("CALL CSVWRITE(%s, %s, 'charset=UTF-8')", quote(file.toAbsolutePath().toString()),
+            quote(String.format("SELECT %s FROM %s", selectColumns, tableName)));
+    try (Connection connection = FlatDatabase.readConnection(database);
+         Statement statement = connection.createStatement()) {
+      long rows = instrumentation.record(sql, StatementKind.QUERY, () -> {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+          return rs.next() ? rs.getLong(1) : 0L;
+        }
+      }, n -> n);
+      progress.accept(rows);
+      return rows;
+    }
+  }
+
+  private long insertCsv(CsvReader reader, List<ColumnSchema> columns, LongConsumer progress)
+          throws IOException, SQLException {
+    String sql = insertSql(columns);
+    long total = 0;
+    try (Connection connection = database.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int pending = 0;
+        List<String> record;
+        while ((record = reader.next()) != null) {
+          for (int i = 0; i < columns.size(); i++)
+            statement.setObject(i + 1, parse(i < record.size() ? record.get(i) : null, columns.get(i)));
+          statement.addBatch();
+          if (++pending == batchSize) {
+            total += commitBatch(connection, statement, sql);
+            pending = 0;
+            progress.accept(total);
+          }
+        }
+        if (pending > 0) {
+          total += commitBatch(connection, statement, sql);
+          progress.accept(total);
+        }
+      } catch (SQLException | IOException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      }
+    }
+    return total;
+  }
+
+  private static Object parse(String value, ColumnSchema column) throws IOException {
+    if (value == null) return null;
+    Class<?> type = Primitives.wrap(column.getJavaType());
+    try {
+      if (type == String.class) return value;
+      if (type == Integer.class) return Integer.valueOf(value.trim());
+      if (type == Long.class) return Long.valueOf(value.trim());
+      if (type == Double.class) return Double.valueOf(value.trim());
+      if (type == Float.class) return Float.valueOf(value.trim());
+      if (type == BigDecimal.class) return new BigDecimal(value.trim());
+      if (type == Boolean.class) return value.trim().equals("1") || Boolean.parseBoolean(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IOException("The value " + value + " doesn't fit the column " + column.getName() + "!", e);
+    }
+    return value;
+  }
+
+  private static String quote(String s) {
+    return "'" + s.replace("'", "''") + "'";
+  }
+
+  private int executeBatch(String sql, List<ColumnSchema> columns, Collection<? extends T> rows) {
+    if (rows.isEmpty()) return 0;
+    int[] indexes = columns.stream().mapToInt(schema.getColumns()::indexOf).toArray();
+    int total = 0;
+    try (Connection connection = database.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        int pending = 0;
+        for (T row : rows) {
+          for (int i = 0; i < indexes.length; i++)
+            statement.setObject(i + 1, mapper.get(row, indexes[i]));
+          statement.addBatch();
+          if (++pending == batchSize) {
+            total += commitBatch(connection, statement, sql);
+            pending = 0;
+          }
+        }
+        if (pending > 0)
+          total += commitBatch(connection, statement, sql);
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      rows.forEach(this::invalidate);
+      database.invalidateResultCache(tableName);
+    }
+    return total;
+  }
+
+  private int commitBatch(Connection connection, PreparedStatement statement, String sql) throws SQLException {
+    int count = instrumentation.record(sql, StatementKind.BATCH, () -> {
+      int rows = 0;
+      for (int updated : statement.executeBatch())
+        rows += updated == Statement.SUCCESS_NO_INFO ? 1 : Math.max(updated, 0);
+      return rows;
+    }, n -> n);
+    connection.commit();
+    return count;
+  }
+
+  private String insertSql(List<ColumnSchema> columns) {
+    return String.format("INSERT INTO %s (%s) VALUES (%s)", tableName,
+            joinColumns(columns, "%s"), joinColumns(columns, "?"));
+  }
+
+  private ColumnSchema requirePrimaryKey() {
+    return schema.getPrimaryKey().orElseThrow(() ->
+            new IllegalStateException("The table " + tableName + " doesn't have a primary key!"));
+  }
+
+  private String joinColumns(List<ColumnSchema> columns, String format) {
+    return columns.stream().map(c -> String.format(format, c.getName())).collect(Collectors.joining(", "));
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.StatementEvent;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.util.SqlText;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reports the statements that FlatDB executes to the registered {@link DatabaseListener}s.
+ *
+ * <p>Without listeners, {@link #record(String, Object[], StatementKind, SqlCall, ToLongFunction)} runs
+ * the statement without creating any events.</p>
+ */
+class Instrumentation {
+
+  static final Instrumentation NONE = new Instrumentation(new DatabaseListener[0], "", e -> {
+  });
+  private static final Object[] NO_PARAMS = new Object[0];
+
+  private final DatabaseListener[] listeners;
+  private final String tablePrefix;
+  private final Consumer<SQLException> failures;
+  private final Cache<String, StatementEvent> templates;
+
+  /**
+   * @param failures told about every statement that failed, whether there are listeners or not.
+   */
+  Instrumentation(List<DatabaseListener> listeners, String tablePrefix, Consumer<SQLException> failures) {
+    this(listeners.toArray(new DatabaseListener[0]), tablePrefix, failures);
+  }
+
+  private Instrumentation(DatabaseListener[] listeners, String tablePrefix, Consumer<SQLException> failures) {
+    this.listeners = listeners;
+    this.tablePrefix = tablePrefix;
+    this.failures = failures;
+    this.templates = CacheBuilder.newBuilder().maximumSize(2048).build();
+  }
+
+  /**
+   * @return the instrumentation of a database, or {@link #NONE} if it isn't a {@link FlatDatabase}.
+   */
+  static Instrumentation of(Database database) {
+    return database instanceof FlatDatabase ? ((FlatDatabase) database).getInstrumentation() : NONE;
+  }
+
+  boolean isEnabled() {
+    return listeners.length > 0;
+  }
+
+  /**
+   * Run a statement and report it to every listener.
+   *
+   * @param rows how many rows the statement's result read or affected.
+   */
+  <R> R record(String sql, StatementKind kind, SqlCall<R> call, ToLongFunction<R> rows) throws SQLException {
+    return record(sql, NO_PARAMS, kind, call, rows);
+  }
+
+  /**
+   * Run a statement with bound parameters and report it to every listener.
+   *
+   * @param rows how many rows the statement's result read or affected.
+   */
+  <R> R record(String sql, Object[] params, StatementKind kind, SqlCall<R> call, ToLongFunction<R> rows)
+          throws SQLException {
+    if (!isEnabled()) {
+      try {
+        return call.call();
+      } catch (SQLException e) {
+        failures.accept(e);
+        throw e;
+      }
+    }
+    StatementEvent event = template(sql, kind);
+    if (params.length > 0) event = event.withParams(params);
+    for (DatabaseListener listener : listeners)
+      notify(listener, event, true);
+    long start = System.nanoTime();
+    R result;
+    try {
+      result = call.call();
+    } catch (SQLException e) {
+      complete(event.completed(System.nanoTime() - start, -1, e));
+      failures.accept(e);
+      throw e;
+    } catch (RuntimeException e) {
+      // Events carry a SQLException, so other failures, like a row that can't be mapped, are wrapped in one.
+      complete(event.completed(System.nanoTime() - start, -1, new SQLException(e.toString(), e)));
+      throw e;
+    }
+    complete(event.completed(System.nanoTime() - start, rows.applyAsLong(result), null));
+    return result;
+  }
+
+  private void complete(StatementEvent event) {
+    for (DatabaseListener listener : listeners)
+      notify(listener, event, false);
+  }
+
+  private void notify(DatabaseListener listener, StatementEvent event, boolean before) {
+    try {
+      if (before) listener.beforeStatement(event);
+      else listener.afterStatement(event);
+    } catch (RuntimeException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Fingerprinting a statement takes a pass over its SQL, so the before-event of recently
+   * seen statements is cached and reused.
+   */
+  private StatementEvent template(String sql, StatementKind kind) {
+    try {
+      StatementEvent template = templates.get(sql, () ->
+              new StatementEvent(sql, SqlText.fingerprint(sql), SqlText.tables(sql, tablePrefix), kind));
+      return template.getKind() == kind ? template : new StatementEvent(sql, template.getFingerprint(),
+              template.getTables(), kind);
+    } catch (ExecutionException e) {
+      return new StatementEvent(sql, sql, SqlText.tables(sql, tablePrefix), kind);
+    }
+  }
+
+  @FunctionalInterface
+  interface SqlCall<R> {
+    R call() throws SQLException;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.mapper.EntityMapper;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Reads and writes the rows of a {@link FlatTable} by primary key.
+ *
+ * <p>Every operation is a single statement whose SQL is built once, so it is served from the
+ * pooled connection's statement cache without being parsed or planned again. {@link #get(Object)}
+ * is {@link FlatTable#findById(Object)}, and writes evict the same row cache. Since it still goes
+ * through SQL, it sees and takes part in the same transactions as every other statement.</p>
+ *
+ * <p>{@link #put(Object)} is an upsert: H2's MERGE, SQLite's INSERT OR REPLACE, or an UPDATE
+ * followed by an INSERT in one transaction on other databases.</p>
+ *
+ * @param <T> the class the table was declared with.
+ */
+public class KeyValueView<T> {
+
+  private final FlatTable<T> table;
+  private final Database database;
+  private final EntityMapper<T> mapper;
+  private final Instrumentation instrumentation;
+  private final int keyIndex;
+  private final int[] updateIndexes;
+  private final String containsSql;
+  private final String removeSql;
+  private final String upsertSql;
+  private final String updateSql;
+  private final String insertSql;
+
+  KeyValueView(FlatTable<T> table, Database database, EntityMapper<T> mapper, Instrumentation instrumentation) {
+    TableSchema<T> schema = table.getSchema();
+    ColumnSchema primaryKey = schema.getPrimaryKey().orElseThrow(() ->
+            new IllegalStateException("The table " + table.getTableName() + " doesn't have a primary key!"));
+    List<ColumnSchema> columns = schema.getColumns();
+    List<ColumnSchema> updateColumns = columns.stream().filter(c -> c != primaryKey).collect(Collectors.toList());
+    this.table = table;
+    this.database = database;
+    this.mapper = mapper;
+    this.instrumentation = instrumentation;
+    this.keyIndex = columns.indexOf(primaryKey);
+    this.updateIndexes = updateColumns.stream().mapToInt(columns::indexOf).toArray();
+
+    String tableName = table.getTableName();
+    String key = primaryKey.getName();
+    String names = columns.stream().map(ColumnSchema::getName).collect(Collectors.joining(", "));
+    String placeholders = columns.stream().map(c -> "?").collect(Collectors.joining(", "));
+    this.containsSql = String.format("SELECT 1 FROM %s WHERE %s = ?", tableName, key);
+    this.removeSql = String.format("DELETE FROM %s WHERE %s = ?", tableName, key);
+    this.insertSql = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, names, placeholders);
+    this.updateSql = updateColumns.isEmpty() ? null : String.format("UPDATE %s SET %s WHERE %s = ?", tableName,
+            updateColumns.stream().map(c -> c.getName() + " = ?").collect(Collectors.joining(", ")), key);
+    String driverName = database.getDriverName();
+    if ("h2".equalsIgnoreCase(driverName))
+      this.upsertSql = String.format("MERGE INTO %s (%s) KEY (%s) VALUES (%s)", tableName, names, key, placeholders);
+    else if ("sqlite".equalsIgnoreCase(driverName))
+      this.upsertSql = String.format("INSERT OR REPLACE INTO %s (%s) VALUES (%s)", tableName, names, placeholders);
+    else
+      this.upsertSql = null;
+  }
+
+  /**
+   * @return the row with the given primary key, or an empty {@link Optional} if there is none.
+   */
+  public Optional<T> get(Object key) {
+    return table.findById(key);
+  }
+
+  public boolean containsKey(Object key) {
+    if (table.isCached(key)) return true;
+    try (Connection connection = FlatDatabase.readConnection(database);
+         PreparedStatement statement = FlatDatabase.prepare(connection, containsSql, key)) {
+      return instrumentation.record(containsSql, new Object[]{key}, StatementKind.QUERY, () -> {
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next();
+        }
+      }, found -> found ? 1 : 0);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return false;
+  }
+
+  /**
+   * Insert the row, or replace the row that has the same primary key.
+   *
+   * @return the number of written rows.
+   */
+  public int put(T row) {
+    Object key = mapper.get(row, keyIndex);
+    Object[] values = new Object[table.getSchema().getColumns().size()];
+    for (int i = 0; i < values.length; i++)
+      values[i] = mapper.get(row, i);
+    try (Connection connection = database.getConnection()) {
+      if (upsertSql != null) return execute(connection, upsertSql, values);
+      connection.setAutoCommit(false);
+      try {
+        int written = 0;
+        if (updateSql != null) {
+          Object[] params = new Object[updateIndexes.length + 1];
+          for (int i = 0; i < updateIndexes.length; i++)
+            params[i] = values[updateIndexes[i]];
+          params[updateIndexes.length] = key;
+          written = execute(connection, updateSql, params);
+        }
+        if (written == 0 && (updateSql != null || !containsKey(key)))
+          written = execute(connection, insertSql, values);
+        connection.commit();
+        return written;
+      } catch (SQLException e) {
+        connection.rollback();
+        throw e;
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      evict(key);
+    }
+    return 0;
+  }
+
+  /**
+   * Delete the row with the given primary key.
+   *
+   * @return true if there was such a row.
+   */
+  public boolean remove(Object key) {
+    try (Connection connection = database.getConnection()) {
+      return execute(connection, removeSql, key) > 0;
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      evict(key);
+    }
+    return false;
+  }
+
+  private int execute(Connection connection, String sql, Object... params) throws SQLException {
+    try (PreparedStatement statement = FlatDatabase.prepare(connection, sql, params)) {
+      return instrumentation.record(sql, params, StatementKind.UPDATE, statement::executeUpdate, n -> n);
+    }
+  }
+
+  private void evict(Object key) {
+    table.invalidateKey(key);
+    database.invalidateResultCache(table.getTableName());
+  }
+}
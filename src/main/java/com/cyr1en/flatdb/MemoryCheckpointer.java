@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.pool.ConnectionPool;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists an in-memory H2 database for {@link StorageMode#MEMORY_WITH_PERSIST}.
+ *
+ * <p>A checkpoint writes the whole database as a compressed SQL script with SCRIPT TO, first to
+ * a temporary file that then replaces the snapshot, so a crash during a checkpoint leaves the
+ * previous snapshot intact.</p>
+ */
+class MemoryCheckpointer implements AutoCloseable {
+
+  private final ConnectionPool pool;
+  private final Path snapshot;
+  private final ScheduledExecutorService scheduler;
+  @Getter private volatile long checkpointCount;
+  private volatile boolean loaded;
+
+  MemoryCheckpointer(ConnectionPool pool, Path snapshot, long intervalMillis) {
+    this.pool = pool;
+    this.snapshot = snapshot;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "FlatDB-Checkpoint");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (intervalMillis > 0)
+      scheduler.scheduleWithFixedDelay(() -> {
+        try {
+          checkpoint();
+        } catch (SQLException e) {
+          e.printStackTrace();
+        }
+      }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Load the snapshot into the database, if there is one. Nothing is checkpointed until this
+   * succeeded, so a snapshot that fails to load isn't overwritten.
+   */
+  void load() throws SQLException {
+    if (Files.exists(snapshot)) {
+      try (Connection connection = pool.getConnection();
+           Statement statement = connection.createStatement()) {
+        statement.execute("RUNSCRIPT FROM " + quote(snapshot) + " COMPRESSION ZIP");
+      }
+    }
+    loaded = true;
+  }
+
+  synchronized void checkpoint() throws SQLException {
+    if (!loaded) return;
+    Path partial = snapshot.resolveSibling(snapshot.getFileName() + ".part");
+    try (Connection connection = pool.getConnection();
+         Statement statement = connection.createStatement()) {
+      if (snapshot.toAbsolutePath().getParent() != null)
+        Files.createDirectories(snapshot.toAbsolutePath().getParent());
+      statement.execute("SCRIPT TO " + quote(partial) + " COMPRESSION ZIP");
+      Files.move(partial, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      checkpointCount++;
+    } catch (IOException e) {
+      throw new SQLException("Could not write the snapshot " + snapshot + "!", e);
+    }
+  }
+
+  private static String quote(Path file) {
+    return "'" + file.toAbsolutePath().toString().replace("'", "''") + "'";
+  }
+
+  /**
+   * Stops the scheduled checkpoints and writes a last one.
+   */
+  @Override
+  public void close() {
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(1, TimeUnit.MINUTES);
+      checkpoint();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+}
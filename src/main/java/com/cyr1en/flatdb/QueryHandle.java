@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.metrics.StatementEvent;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The future of an asynchronous {@link Database} call that can stop the call's statement
+ * while it is running.
+ *
+ * <p>{@link #cancel()} calls {@link Statement#cancel()} from the cancelling thread. The statement
+ * then fails with the SQL state {@link StatementEvent#CANCELLED_STATE}, which listeners and
+ * {@link com.cyr1en.flatdb.metrics.StatementStats#getCancellations()} count as a cancellation.
+ * Futures derived from this one, like the ones of {@link #thenApply(java.util.function.Function)},
+ * cancel nothing but themselves.</p>
+ */
+public class QueryHandle<T> extends CompletableFuture<T> {
+
+  private final Object lock = new Object();
+  private Statement statement;
+  private volatile boolean cancelled;
+
+  /**
+   * Stop the statement if it is running and complete this future with a
+   * {@link java.util.concurrent.CancellationException}.
+   *
+   * @return true if this future was cancelled by this call.
+   */
+  public boolean cancel() {
+    return cancel(true);
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    synchronized (lock) {
+      cancelled = true;
+      if (statement != null) {
+        try {
+          statement.cancel();
+        } catch (SQLException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+    return super.cancel(mayInterruptIfRunning);
+  }
+
+  /**
+   * Make the statement cancellable until {@link #detach()}.
+   *
+   * @throws SQLException if the call was cancelled before its statement started.
+   */
+  void attach(Statement statement) throws SQLException {
+    synchronized (lock) {
+      if (cancelled) throw cancelledException(null);
+      this.statement = statement;
+    }
+  }
+
+  /**
+   * Waits for a cancel that is in progress, so the statement can't be cancelled once it was
+   * handed back to the statement cache and reused by another call.
+   */
+  void detach() {
+    synchronized (lock) {
+      this.statement = null;
+    }
+  }
+
+  /**
+   * @return the failure of a statement, marked as a cancellation if this handle was cancelled.
+   */
+  SQLException translate(SQLException e) {
+    if (!cancelled || StatementEvent.CANCELLED_STATE.equals(e.getSQLState())) return e;
+    return cancelledException(e);
+  }
+
+  private static SQLException cancelledException(SQLException cause) {
+    return new SQLException("The statement was cancelled.", StatementEvent.CANCELLED_STATE,
+            cause == null ? 0 : cause.getErrorCode(), cause);
+  }
+}
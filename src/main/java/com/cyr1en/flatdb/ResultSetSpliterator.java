@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.exceptions.UncheckedSQLException;
+import com.cyr1en.flatdb.mapper.RowMapper;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Lazily maps the rows of an open {@link ResultSet}.
+ *
+ * <p>The spliterator owns the result set, its statement and its leased connection,
+ * and releases all of them once the last row has been read or {@link #close()} is called.</p>
+ */
+class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+
+  private final Connection connection;
+  private final Statement statement;
+  private final ResultSet resultSet;
+  private final RowMapper<T> mapper;
+  private final Runnable beforeRelease;
+  private boolean closed;
+
+  ResultSetSpliterator(Connection connection, Statement statement, ResultSet resultSet,
+                       RowMapper<T> mapper, Runnable beforeRelease) {
+    super(Long.MAX_VALUE, Spliterator.ORDERED);
+    this.connection = connection;
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.mapper = mapper;
+    this.beforeRelease = beforeRelease;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (closed) return false;
+    try {
+      if (!resultSet.next()) {
+        close();
+        return false;
+      }
+      action.accept(mapper.map(resultSet));
+      return true;
+    } catch (SQLException e) {
+      close();
+      throw new UncheckedSQLException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      resultSet.close();
+      statement.close();
+      beforeRelease.run();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.IndexSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+import com.cyr1en.flatdb.types.SQLTypePair;
+import com.cyr1en.flatdb.types.TypeMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers a fingerprint of every table's schema in a table of its own, so tables whose
+ * schema didn't change since the last startup can skip reconciliation.
+ *
+ * <p>A fingerprint covers the table name and the name, SQL type, default value and key flags
+ * of every column, so changing a custom type mapping changes it as well.</p>
+ */
+class SchemaFingerprints {
+
+  /**
+   * Bump this whenever the DDL that FlatDB generates for the same schema changes.
+   */
+  private static final int FORMAT = 1;
+
+  private final String tableName;
+  private final TypeMap typeMap;
+
+  SchemaFingerprints(String db_prefix, TypeMap typeMap) {
+    this.tableName = db_prefix + "schema_fingerprints";
+    this.typeMap = typeMap;
+  }
+
+  String of(TableSchema<?> schema) {
+    Hasher hasher = Hashing.sha256().newHasher()
+            .putInt(FORMAT)
+            .putString(schema.getTableName().toLowerCase(Locale.ROOT), StandardCharsets.UTF_8);
+    for (ColumnSchema column : schema.getColumns()) {
+      SQLTypePair type = typeMap.resolve(column.getJavaType());
+      hasher.putString(column.getName().toLowerCase(Locale.ROOT), StandardCharsets.UTF_8)
+              .putString(type == null ? "?" : type.getTypeName() + '=' + type.getDefaultValue(), StandardCharsets.UTF_8)
+              .putString(String.valueOf(column.getDefaultValue()), StandardCharsets.UTF_8)
+              .putBoolean(column.isPrimaryKey())
+              .putBoolean(column.isAutoIncrement());
+    }
+    for (IndexSchema index : schema.getIndexes())
+      hasher.putString(index.getName(), StandardCharsets.UTF_8)
+              .putString(String.join(",", index.getColumns()).toLowerCase(Locale.ROOT), StandardCharsets.UTF_8)
+              .putBoolean(index.isUnique());
+    return hasher.hash().toString();
+  }
+
+  /**
+   * @return the stored fingerprint of every table by its lowercase name, or an empty map if
+   * nothing was stored yet.
+   */
+  Map<String, String> read(Connection connection) {
+    Map<String, String> fingerprints = new HashMap<>();
+    try (Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT table_name, fingerprint FROM " + tableName)) {
+      while (rs.next())
+        fingerprints.put(rs.getString(1), rs.getString(2));
+    } catch (SQLException e) {
+      // The table doesn't exist before the first startup with fingerprints.
+      fingerprints.clear();
+    }
+    return fingerprints;
+  }
+
+  /**
+   * Store the fingerprints of the given schemas, replacing their previous fingerprints.
+   */
+  void write(Connection connection, List<TableSchema<?>> schemas) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS " + tableName +
+              " (table_name VARCHAR(255) NOT NULL PRIMARY KEY, fingerprint VARCHAR(64) NOT NULL)");
+    }
+    connection.setAutoCommit(false);
+    try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + tableName + " WHERE table_name = ?");
+         PreparedStatement insert = connection.prepareStatement("INSERT INTO " + tableName +
+                 " (table_name, fingerprint) VALUES (?, ?)")) {
+      Map<String, String> fingerprints = new LinkedHashMap<>();
+      for (TableSchema<?> schema : schemas)
+        fingerprints.put(schema.getTableName().toLowerCase(Locale.ROOT), of(schema));
+      for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+        delete.setString(1, fingerprint.getKey());
+        delete.addBatch();
+        insert.setString(1, fingerprint.getKey());
+        insert.setString(2, fingerprint.getValue());
+        insert.addBatch();
+      }
+      delete.executeBatch();
+      insert.executeBatch();
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.IndexSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The tables and columns that exist in a database, read from its metadata in one pass.
+ *
+ * <p>Only tables whose name starts with the database prefix are kept. Names are compared
+ * case-insensitively since most databases fold unquoted identifiers to upper case.</p>
+ *
+ * <p>The metadata has to be read per table for indexes, so they are only read for the tables that
+ * are asked about, while the connection the snapshot was read from is still open.</p>
+ */
+class SchemaSnapshot {
+
+  private final DatabaseMetaData meta;
+  private final Map<String, Set<String>> tables;
+  private final Map<String, String> tableNames;
+  private final Map<String, Map<String, Set<String>>> indexes;
+
+  private SchemaSnapshot(DatabaseMetaData meta) {
+    this.meta = meta;
+    this.tables = new HashMap<>();
+    this.tableNames = new HashMap<>();
+    this.indexes = new HashMap<>();
+  }
+
+  static SchemaSnapshot read(Connection connection, String tablePrefix) throws SQLException {
+    DatabaseMetaData meta = connection.getMetaData();
+    SchemaSnapshot snapshot = new SchemaSnapshot(meta);
+    String prefix = tablePrefix.toLowerCase(Locale.ROOT);
+    try (ResultSet rs = meta.getTables(null, null, null, new String[]{"TABLE"})) {
+      while (rs.next()) {
+        String name = rs.getString("TABLE_NAME");
+        String table = name.toLowerCase(Locale.ROOT);
+        if (!table.startsWith(prefix)) continue;
+        snapshot.tables.put(table, new HashSet<>());
+        snapshot.tableNames.put(table, name);
+      }
+    }
+    if (snapshot.tables.isEmpty()) return snapshot;
+    try (ResultSet rs = meta.getColumns(null, null, null, null)) {
+      while (rs.next()) {
+        Set<String> columns = snapshot.tables.get(rs.getString("TABLE_NAME").toLowerCase(Locale.ROOT));
+        if (columns != null) columns.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+      }
+    }
+    return snapshot;
+  }
+
+  boolean hasTable(String table) {
+    return tables.containsKey(table.toLowerCase(Locale.ROOT));
+  }
+
+  boolean hasColumn(String table, String column) {
+    Set<String> columns = tables.get(table.toLowerCase(Locale.ROOT));
+    return columns != null && columns.contains(column.toLowerCase(Locale.ROOT));
+  }
+
+  boolean hasIndex(String table, String index) throws SQLException {
+    return indexes(table).containsKey(index.toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * @return the names of the indexes of a table, without the index of its primary key.
+   */
+  Set<String> getIndexes(String table) throws SQLException {
+    return indexes(table).keySet();
+  }
+
+  /**
+   * Record the table, columns and indexes of a schema as existing, once the DDL for them was planned.
+   */
+  void add(TableSchema<?> schema) throws SQLException {
+    String table = schema.getTableName().toLowerCase(Locale.ROOT);
+    Set<String> columns = tables.computeIfAbsent(table, t -> new HashSet<>());
+    for (ColumnSchema column : schema.getColumns())
+      columns.add(column.getName().toLowerCase(Locale.ROOT));
+    if (schema.getIndexes().isEmpty()) return;
+    Map<String, Set<String>> tableIndexes = indexes(table);
+    for (IndexSchema index : schema.getIndexes())
+      tableIndexes.put(index.getName().toLowerCase(Locale.ROOT), index.getColumns().stream()
+              .map(c -> c.toLowerCase(Locale.ROOT)).collect(Collectors.toSet()));
+  }
+
+  private Map<String, Set<String>> indexes(String table) throws SQLException {
+    String key = table.toLowerCase(Locale.ROOT);
+    Map<String, Set<String>> tableIndexes = indexes.get(key);
+    if (tableIndexes != null) return tableIndexes;
+    tableIndexes = new LinkedHashMap<>();
+    String name = tableNames.get(key);
+    if (name != null) {
+      try (ResultSet rs = meta.getIndexInfo(null, null, name, false, true)) {
+        while (rs.next()) {
+          String index = rs.getString("INDEX_NAME");
+          String column = rs.getString("COLUMN_NAME");
+          if (index == null || column == null) continue;
+          tableIndexes.computeIfAbsent(index.toLowerCase(Locale.ROOT), i -> new HashSet<>())
+                  .add(column.toLowerCase(Locale.ROOT));
+        }
+      }
+      Set<String> primaryKey = new HashSet<>();
+      try (ResultSet rs = meta.getPrimaryKeys(null, null, name)) {
+        while (rs.next())
+          primaryKey.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+      }
+      tableIndexes.values().removeIf(primaryKey::equals);
+    }
+    indexes.put(key, tableIndexes);
+    return tableIndexes;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+/**
+ * Where an H2 database keeps its data, see {@link DatabaseBuilder#setStorageMode(StorageMode)}.
+ */
+public enum StorageMode {
+
+  /**
+   * The data is stored in the file at the database path. This is the default and the only mode
+   * that every driver supports.
+   */
+  FILE,
+
+  /**
+   * The data only lives in memory and is gone once the database is closed. The path only names
+   * the database, so databases with the same path in one JVM share their data.
+   */
+  MEMORY,
+
+  /**
+   * Like {@link #FILE}, but the file is accessed through memory mapped IO, which saves a copy
+   * on every read of a page that is cached by the operating system.
+   */
+  NIO_MAPPED,
+
+  /**
+   * The data lives in memory and is loaded from a snapshot file next to the database path when
+   * the database is built. The snapshot is rewritten on an interval and when the database is
+   * closed, so changes after the last checkpoint are lost if the JVM dies.
+   */
+  MEMORY_WITH_PERSIST;
+
+  boolean isInMemory() {
+    return this == MEMORY || this == MEMORY_WITH_PERSIST;
+  }
+}
@@ -27,9 +27,17 @@ package com.cyr1en.flatdb;
 import com.cyr1en.flatdb.Database;
 import com.cyr1en.flatdb.FlatTable;
 import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Index;
 import com.cyr1en.flatdb.annotations.Table;
+import com.cyr1en.flatdb.cache.CacheSpec;
 import com.cyr1en.flatdb.exceptions.JavaTypeConversionException;
 import com.cyr1en.flatdb.exceptions.MissingAnnotationException;
+import com.cyr1en.flatdb.mapper.GeneratedTable;
+import com.cyr1en.flatdb.mapper.GeneratedTables;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.IndexSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
 import com.cyr1en.flatdb.types.SQLTypePair;
 import com.cyr1en.flatdb.types.TypeMap;
 import com.cyr1en.flatdb.util.FastStrings;
@@ -37,14 +45,21 @@ import com.google.common.collect.ImmutableList;
 import lombok.extern.java.Log;
 
 import java.lang.reflect.Field;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.logging.Logger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -53,103 +68,368 @@ public class TableProcessor {
 
   private Database database;
   private String db_prefix;
+  private SchemaFingerprints fingerprints;
+  private TypeMap typeMap;
+  private Instrumentation instrumentation;
 
   public TableProcessor(Database database) {
+    this(database, false);
+  }
+
+  /**
+   * @param useFingerprints whether {@link #processAll(List, int)} skips tables whose schema
+   *                        didn't change since it last processed them.
+   */
+  public TableProcessor(Database database, boolean useFingerprints) {
     this.database = database;
     this.db_prefix = database.getDb_prefix();
+    this.typeMap = database.getTypeMap();
+    this.fingerprints = useFingerprints ? new SchemaFingerprints(db_prefix, typeMap) : null;
+    this.instrumentation = Instrumentation.of(database);
   }
 
-  public FlatTable process(Class classToProcess) {
-    assertAnnotated(classToProcess);
-    ImmutableList<Field> annotatedFields = checkAnnotatedFields(classToProcess);
+  /**
+   * Create or update the table of a class and return its {@link FlatTable}.
+   *
+   * <p>Errors while applying the DDL are printed, and the table is returned regardless.</p>
+   *
+   * @see #processAll(List)
+   */
+  public <T> FlatTable<T> process(Class<T> classToProcess) {
+    TableSchema<T> schema = schemaOf(classToProcess);
+    try {
+      reconcile(Collections.singletonList(schema), null);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    return newTable(schema);
+  }
 
-    String tableName = getTableName(classToProcess);
-    System.out.println(tableName);
-    processTable(tableName);
-    processColumns(tableName, annotatedFields);
+  /**
+   * Create or update the tables of several classes at once.
+   *
+   * @see #processAll(List, int)
+   */
+  public Map<Class<?>, FlatTable<?>> processAll(List<Class> classesToProcess) throws SQLException {
+    return processAll(classesToProcess, 1);
+  }
 
-    return new FlatTable(tableName, database);
+  /**
+   * Create or update the tables of several classes at once.
+   *
+   * <p>The existing tables and columns are read from the database metadata once and diffed
+   * against the schemas of all classes in memory. Only the missing tables and columns are
+   * then created, on one connection and in one transaction where the database supports
+   * transactional DDL.</p>
+   *
+   * <p>If this processor uses fingerprints, tables whose schema didn't change since they were
+   * last processed are skipped without reading any metadata. Tables that were changed or dropped
+   * outside of FlatDB in the meantime aren't noticed.</p>
+   *
+   * <p>With a parallelism above 1, the classes are read and their {@link FlatTable}s are built
+   * on a {@link ForkJoinPool}, and the DDL of every table is applied on its own pooled
+   * connection. A failing table doesn't stop the others; all failures are reported together.</p>
+   *
+   * @param parallelism how many tables are processed at the same time.
+   * @return the {@link FlatTable} of every class, in the order of the given classes.
+   * @throws SQLException if the metadata couldn't be read or a DDL statement failed. With
+   * parallelism, the exceptions of every failed table are chained with {@link SQLException#getNextException()}.
+   */
+  public Map<Class<?>, FlatTable<?>> processAll(List<Class> classesToProcess, int parallelism) throws SQLException {
+    ForkJoinPool forkJoin = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    try {
+      List<TableSchema<?>> schemas = inPool(forkJoin, () -> stream(classesToProcess, forkJoin)
+              .<TableSchema<?>>map(c -> schemaOf((Class<?>) c)).collect(Collectors.toList()));
+      List<TableSchema<?>> changed = changedSchemas(schemas);
+      if (!changed.isEmpty()) {
+        reconcile(changed, forkJoin);
+        if (fingerprints != null)
+          try (Connection connection = database.getConnection()) {
+            fingerprints.write(connection, changed);
+          }
+      }
+      List<FlatTable<?>> built = inPool(forkJoin, () -> stream(schemas, forkJoin)
+              .<FlatTable<?>>map(this::newTable).collect(Collectors.toList()));
+      Map<Class<?>, FlatTable<?>> tables = new LinkedHashMap<>();
+      for (int i = 0; i < schemas.size(); i++)
+        tables.put(schemas.get(i).getType(), built.get(i));
+      return tables;
+    } finally {
+      if (forkJoin != null) forkJoin.shutdown();
+    }
   }
 
-  private String getTableName(Class classToProcess) {
-    Table table = (Table) classToProcess.getAnnotation(Table.class);
-    String tableName = FastStrings.isBlank(table.nameOverride()) ?
-            classToProcess.getSimpleName().toLowerCase() : table.nameOverride();
-    return db_prefix + tableName;
+  /**
+   * Read the schema of a class. If the class was compiled with FlatDB's annotation processor,
+   * the generated {@link GeneratedTable} supplies the schema; otherwise it is read from the
+   * class' annotations through reflection.
+   */
+  private <T> TableSchema<T> schemaOf(Class<T> classToProcess) {
+    assertAnnotated(classToProcess);
+    Optional<GeneratedTable<T>> generated = GeneratedTables.find(classToProcess);
+    TableSchema<T> schema = generated.isPresent() ?
+            generated.get().getSchema(db_prefix + generated.get().getTableName()) : buildSchema(classToProcess);
+    List<IndexSchema> indexes = indexesOf(schema);
+    return indexes.isEmpty() ? schema :
+            new TableSchema<>(schema.getTableName(), schema.getType(), schema.getColumns(), indexes);
   }
 
-  private String getColName(Field field) {
-    Column columnMeta = field.getAnnotation(Column.class);
-    return FastStrings.isBlank(columnMeta.nameOverride()) ?
-            field.getName().toLowerCase() : columnMeta.nameOverride();
+  /**
+   * Read the {@link Index} annotations of a table's class and its column fields. Indexes that
+   * name a column the table doesn't have are skipped with a warning.
+   */
+  private List<IndexSchema> indexesOf(TableSchema<?> schema) {
+    Class<?> type = schema.getType();
+    List<IndexSchema> indexes = new ArrayList<>();
+    for (Index index : type.getAnnotationsByType(Index.class))
+      indexSchema(schema, index, Arrays.asList(index.columns())).ifPresent(indexes::add);
+    for (Field field : type.getDeclaredFields()) {
+      if (!field.isAnnotationPresent(Column.class)) continue;
+      for (Index index : field.getAnnotationsByType(Index.class)) {
+        List<String> columns = new ArrayList<>();
+        columns.add(getColName(field));
+        columns.addAll(Arrays.asList(index.columns()));
+        indexSchema(schema, index, columns).ifPresent(indexes::add);
+      }
+    }
+    return indexes;
   }
 
-  private void processTable(String tableName) {
-    if (database.tableExists(tableName)) return;
-    database.executeUpdate("CREATE TABLE %s", tableName);
+  private Optional<IndexSchema> indexSchema(TableSchema<?> schema, Index index, List<String> columns) {
+    if (columns.isEmpty()) {
+      log.warning("Cannot create an index on " + schema.getTableName() + " without any columns!");
+      return Optional.empty();
+    }
+    for (String column : columns) {
+      if (schema.getColumns().stream().noneMatch(c -> c.getName().equalsIgnoreCase(column))) {
+        log.warning("Cannot create an index on " + schema.getTableName() + " for the unknown column " + column + "!");
+        return Optional.empty();
+      }
+    }
+    // Index names are unique per schema, not per table, so explicit names are qualified with the table name.
+    String prefix = schema.getTableName() + "_";
+    String name = FastStrings.isBlank(index.name()) ? prefix + String.join("_", columns) + "_idx" :
+            index.name().toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT)) ?
+                    index.name() : prefix + index.name();
+    return Optional.of(new IndexSchema(name.toLowerCase(Locale.ROOT), columns, index.unique()));
   }
 
-  private void processColumns(String tableName, ImmutableList<Field> annotatedFields) {
-    //Use this to check if there are more than one primary keys.
-    AtomicReference<Boolean> initializedPrimary = new AtomicReference<>(false);
-    Optional<ResultSet> oRS = database.executeQuery("SELECT * FROM %s", tableName);
+  /**
+   * Find the indexes that exist on the tables of the given classes but aren't declared with
+   * {@link Index} anymore. The index of a table's primary key is never reported.
+   *
+   * <p>FlatDB never drops an index by itself; this can be used to find the ones that are safe to drop.</p>
+   *
+   * @return the names of the undeclared indexes by table name, leaving out tables without any.
+   */
+  public Map<String, List<String>> findUndeclaredIndexes(List<Class> classes) throws SQLException {
+    Map<String, List<String>> undeclared = new LinkedHashMap<>();
+    try (Connection connection = database.getConnection()) {
+      SchemaSnapshot snapshot = SchemaSnapshot.read(connection, db_prefix);
+      for (Class<?> c : classes) {
+        TableSchema<?> schema = schemaOf(c);
+        List<String> names = snapshot.getIndexes(schema.getTableName()).stream()
+                .filter(i -> schema.getIndexes().stream().noneMatch(d -> d.getName().equalsIgnoreCase(i)))
+                .collect(Collectors.toList());
+        if (!names.isEmpty()) undeclared.put(schema.getTableName(), names);
+      }
+    }
+    return undeclared;
+  }
 
-    for (Field f : annotatedFields) {
-      Column columnMeta = f.getAnnotation(Column.class);
-      oRS.ifPresent(rs -> {
-        if (columnMeta.primaryKey()) {
-          if (!initializedPrimary.get()) {
-            processColumn(rs, tableName, f, initializedPrimary.get());
-            initializedPrimary.set(true);
-          }
-        } else {
-          processColumn(rs, tableName, f, initializedPrimary.get());
-        }
-      });
+  private <T> FlatTable<T> newTable(TableSchema<T> schema) {
+    FlatTable<T> table = new FlatTable<>(schema, database);
+    Table meta = schema.getType().getAnnotation(Table.class);
+    if (meta.cacheSize() > 0)
+      table.enableCache(CacheSpec.of(meta.cacheSize(), meta.cacheExpireAfterWrite(), TimeUnit.SECONDS));
+    return table;
+  }
+
+  /**
+   * @return the schemas whose fingerprint differs from the one stored at the last startup,
+   * or every schema if fingerprints aren't used.
+   */
+  private List<TableSchema<?>> changedSchemas(List<TableSchema<?>> schemas) throws SQLException {
+    if (fingerprints == null) return schemas;
+    Map<String, String> stored;
+    try (Connection connection = database.getConnection()) {
+      stored = fingerprints.read(connection);
     }
+    return schemas.stream()
+            .filter(s -> !fingerprints.of(s).equals(stored.get(s.getTableName().toLowerCase(Locale.ROOT))))
+            .collect(Collectors.toList());
   }
 
-  private void processColumn(ResultSet rs, String tableName, Field field, boolean isSecondaryKey) {
-    Column columnMeta = field.getAnnotation(Column.class);
-    String colName = getColName(field);
+  /**
+   * Diff the schemas against one metadata snapshot and apply the missing DDL, table by table
+   * on the fork join pool if there is one.
+   */
+  void reconcile(List<TableSchema<?>> schemas, ForkJoinPool forkJoin) throws SQLException {
+    Map<String, List<String>> ddlByTable = new LinkedHashMap<>();
+    try (Connection connection = database.getConnection()) {
+      SchemaSnapshot snapshot = SchemaSnapshot.read(connection, db_prefix);
+      for (TableSchema<?> schema : schemas) {
+        List<String> ddl = plan(schema, snapshot);
+        if (!ddl.isEmpty())
+          ddlByTable.computeIfAbsent(schema.getTableName().toLowerCase(Locale.ROOT), t -> new ArrayList<>()).addAll(ddl);
+      }
+      if (ddlByTable.isEmpty()) return;
+      if (forkJoin == null) {
+        try {
+          apply(connection, ddlByTable.values().stream().flatMap(List::stream).collect(Collectors.toList()));
+        } finally {
+          database.invalidateResultCache();
+        }
+        return;
+      }
+    }
 
-    if (colExists(rs, colName)) return;
+    List<SQLException> errors = inPool(forkJoin, () -> ddlByTable.values().parallelStream().map(ddl -> {
+      try (Connection connection = database.getConnection()) {
+        apply(connection, ddl);
+        return null;
+      } catch (SQLException e) {
+        return e;
+      }
+    }).filter(Objects::nonNull).collect(Collectors.toList()));
+    database.invalidateResultCache();
+    if (errors.isEmpty()) return;
+    SQLException failed = new SQLException(errors.size() + " of " + ddlByTable.size() +
+            " tables failed to initialize.", errors.get(0));
+    errors.forEach(failed::setNextException);
+    throw failed;
+  }
 
-    if (columnMeta.primaryKey() && isSecondaryKey) {
-      log.warning("Cannot make the column " + field.getName() + " as primary key. Cannot define a secondary primary key!");
+  private void apply(Connection connection, List<String> ddl) throws SQLException {
+    connection.setAutoCommit(false);
+    try (Statement statement = connection.createStatement()) {
+      for (String sql : ddl) {
+        log.fine(sql);
+        instrumentation.record(sql, StatementKind.DDL, () -> statement.execute(sql), b -> -1);
+      }
+      connection.commit();
+    } catch (SQLException e) {
+      connection.rollback();
+      throw e;
     }
+  }
 
-    SQLTypePair sqlTypePair = TypeMap.getSQLType(field.getType());
-    if (sqlTypePair == null)
-      throw new JavaTypeConversionException(field.getType());
+  private static <E> Stream<E> stream(List<E> list, ForkJoinPool forkJoin) {
+    return forkJoin == null ? list.stream() : list.parallelStream();
+  }
 
-    String defaultValue = FastStrings.isBlank(columnMeta.defaultValue()) ?
-            sqlTypePair.getDefaultValue() : columnMeta.defaultValue();
-    defaultValue = encloseIfNeeded(defaultValue);
+  /**
+   * Run a task on the fork join pool so its parallel streams use the pool's threads,
+   * or on the calling thread if there is no pool.
+   */
+  private static <R> R inPool(ForkJoinPool forkJoin, Callable<R> task) {
+    if (forkJoin == null) {
+      try {
+        return task.call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return forkJoin.submit(task).join();
+  }
 
-    StringBuilder sb = new StringBuilder("ALTER TABLE %s ADD %s %s NOT NULL "); //Initial = ALTER TABLE table_name ADD colName DATA_TYPE
-    if (columnMeta.autoIncrement()) {
-      sb.append("AUTO_INCREMENT ");
-      String filteredPK = columnMeta.primaryKey() ? isSecondaryKey ? "" : "PRIMARY KEY" : "";
-      sb.append(filteredPK);
-      database.executeUpdate(sb.toString(), tableName, colName, sqlTypePair.getTypeName());
+  /**
+   * Diff a schema against the snapshot and return the DDL that brings the table up to date.
+   */
+  private List<String> plan(TableSchema<?> schema, SchemaSnapshot snapshot) throws SQLException {
+    String tableName = schema.getTableName();
+    List<String> ddl = new ArrayList<>();
+    if (!snapshot.hasTable(tableName)) {
+      ddl.add(createTableSql(schema));
     } else {
-      sb.append("DEFAULT %s");
-      database.executeUpdate(sb.toString(), tableName, colName, sqlTypePair.getTypeName(), defaultValue);
+      for (ColumnSchema column : schema.getColumns())
+        if (!snapshot.hasColumn(tableName, column.getName()))
+          ddl.add(String.format("ALTER TABLE %s ADD %s", tableName, columnDefinition(column)));
     }
+    for (IndexSchema index : schema.getIndexes())
+      if (!snapshot.hasIndex(tableName, index.getName()))
+        ddl.add(String.format("CREATE %sINDEX IF NOT EXISTS %s ON %s (%s)", index.isUnique() ? "UNIQUE " : "",
+                index.getName(), tableName, String.join(", ", index.getColumns())));
+    snapshot.add(schema);
+    return ddl;
   }
 
-  private boolean colExists(ResultSet resultSet, String columnName) {
-    try {
-      ResultSetMetaData meta = resultSet.getMetaData();
-      int colCount = meta.getColumnCount();
-      for (int i = 1; i <= colCount; i++)
-        if (meta.getColumnName(i).equalsIgnoreCase(columnName))
-          return true;
-    } catch (SQLException e) {
-      e.printStackTrace();
+  /**
+   * Build the CREATE TABLE statement of a schema.
+   *
+   * <p>The DDL that was generated at compile time assumes the built-in types of the {@link TypeMap}, so it is
+   * only used when none of the column types has a custom type mapping.</p>
+   */
+  private String createTableSql(TableSchema<?> schema) {
+    Optional<? extends GeneratedTable<?>> generated = GeneratedTables.find(schema.getType());
+    if (generated.isPresent() && schema.getColumns().stream().noneMatch(c -> typeMap.isCustom(c.getJavaType()))) {
+      String createSql = generated.get().getCreateTableSql(schema.getTableName());
+      if (createSql != null) return createSql;
+    }
+    return reflectiveCreateTableSql(schema);
+  }
+
+  /**
+   * Build the CREATE TABLE statement of a schema from its columns and the type map, ignoring any generated DDL.
+   */
+  String reflectiveCreateTableSql(TableSchema<?> schema) {
+    if (schema.getColumns().isEmpty())
+      return String.format("CREATE TABLE %s", schema.getTableName());
+    return String.format("CREATE TABLE %s (%s)", schema.getTableName(), schema.getColumns().stream()
+            .map(this::columnDefinition).collect(Collectors.joining(", ")));
+  }
+
+  private <T> TableSchema<T> buildSchema(Class<T> type) {
+    ImmutableList<Field> annotatedFields = checkAnnotatedFields(type);
+    List<ColumnSchema> columns = new ArrayList<>();
+    boolean hasPrimary = false;
+    for (Field f : annotatedFields) {
+      Column columnMeta = f.getAnnotation(Column.class);
+      boolean primaryKey = columnMeta.primaryKey() && !hasPrimary;
+      if (columnMeta.primaryKey() && hasPrimary)
+        log.warning("Cannot make the column " + f.getName() + " as primary key. Cannot define a secondary primary key!");
+      hasPrimary |= primaryKey;
+      columns.add(new ColumnSchema(getColName(f), f, columnMeta.defaultValue(), primaryKey, columnMeta.autoIncrement()));
+    }
+    return new TableSchema<>(getTableName(type), type, columns);
+  }
+
+  private String getTableName(Class classToProcess) {
+    Table table = (Table) classToProcess.getAnnotation(Table.class);
+    String tableName = FastStrings.isBlank(table.nameOverride()) ?
+            classToProcess.getSimpleName().toLowerCase() : table.nameOverride();
+    return db_prefix + tableName;
+  }
+
+  private String getColName(Field field) {
+    Column columnMeta = field.getAnnotation(Column.class);
+    return FastStrings.isBlank(columnMeta.nameOverride()) ?
+            field.getName().toLowerCase() : columnMeta.nameOverride();
+  }
+
+  /**
+   * Build the definition of a column as it appears in CREATE TABLE and ALTER TABLE ADD.
+   *
+   * <p>i.e. colName DATA_TYPE NOT NULL DEFAULT value</p>
+   */
+  private String columnDefinition(ColumnSchema column) {
+    SQLTypePair sqlTypePair = typeMap.resolve(column.getJavaType());
+    if (sqlTypePair == null)
+      throw new JavaTypeConversionException(column.getJavaType());
+
+    StringBuilder sb = new StringBuilder(column.getName()).append(' ')
+            .append(sqlTypePair.getTypeName()).append(" NOT NULL ");
+    if (column.isAutoIncrement()) {
+      sb.append("AUTO_INCREMENT ");
+      if (column.isPrimaryKey()) sb.append("PRIMARY KEY");
+    } else {
+      String defaultValue = FastStrings.isBlank(column.getDefaultValue()) ?
+              sqlTypePair.getDefaultValue() : column.getDefaultValue();
+      sb.append("DEFAULT ").append(encloseIfNeeded(defaultValue));
     }
-    return false;
+    return sb.toString().trim();
   }
 
   private void assertAnnotated(Class from) {
@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import lombok.Getter;
+import org.intellij.lang.annotations.Language;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A transaction that was started with {@link Database#inTransaction(TransactionWork)}.
+ *
+ * <p>While the work runs, its thread is bound to the transaction's connection: every call on
+ * the {@link Database}, its {@link FlatTable}s and {@link Database#getConnection()} from that
+ * thread joins the transaction. Commits and rollbacks on that connection are left to the
+ * transaction, and a statement that fails marks the whole transaction as failed unless it is
+ * rolled back to a savepoint that was set before it.</p>
+ *
+ * <p>Asynchronous calls run on other threads and don't join the transaction.</p>
+ */
+public class Transaction {
+
+  private final FlatDatabase database;
+  private final Connection connection;
+  private final Connection bound;
+  @Getter private final int attempt;
+  @Getter private boolean rollbackOnly;
+  private final Map<Savepoint, SQLException> savepoints;
+  private final List<Runnable> endActions;
+  private SQLException failure;
+  private volatile boolean ended;
+
+  Transaction(FlatDatabase database, Connection connection, int attempt) {
+    this.database = database;
+    this.connection = connection;
+    this.attempt = attempt;
+    this.savepoints = new IdentityHashMap<>();
+    this.endActions = new ArrayList<>();
+    this.bound = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new Binding());
+  }
+
+  /**
+   * @return the connection of this transaction. Closing, committing or rolling it back is left
+   * to the transaction, and it stops working once the transaction ended.
+   */
+  public Connection getConnection() {
+    return bound;
+  }
+
+  /**
+   * Execute an update within this transaction.
+   *
+   * @throws SQLException if the update failed, which also marks the transaction as failed.
+   */
+  public int executeUpdate(@Language("SQL") String sql, Object... params) throws SQLException {
+    return database.update(sql, params);
+  }
+
+  /**
+   * Execute a query within this transaction. The result sees the changes this transaction
+   * made so far and is never served from the result cache.
+   */
+  public ResultSet executeQuery(@Language("SQL") String query, Object... params) throws SQLException {
+    return database.query(query, params);
+  }
+
+  public Savepoint setSavepoint() throws SQLException {
+    Savepoint savepoint = connection.setSavepoint();
+    savepoints.put(savepoint, failure);
+    return savepoint;
+  }
+
+  public Savepoint setSavepoint(String name) throws SQLException {
+    Savepoint savepoint = connection.setSavepoint(name);
+    savepoints.put(savepoint, failure);
+    return savepoint;
+  }
+
+  /**
+   * Undo everything after the savepoint, including the failures of statements that ran after it.
+   */
+  public void rollback(Savepoint savepoint) throws SQLException {
+    connection.rollback(savepoint);
+    if (savepoints.containsKey(savepoint)) failure = savepoints.get(savepoint);
+  }
+
+  public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+    connection.releaseSavepoint(savepoint);
+    savepoints.remove(savepoint);
+  }
+
+  /**
+   * Roll the transaction back instead of committing it once its work returns.
+   */
+  public void setRollbackOnly() {
+    this.rollbackOnly = true;
+  }
+
+  /**
+   * Run work that joins this transaction within a savepoint, which is rolled back if the work fails.
+   */
+  <T> T nested(TransactionWork<T> work) throws SQLException {
+    Savepoint savepoint = setSavepoint();
+    SQLException before = failure;
+    try {
+      T result = work.run(this);
+      if (failure != before) throw failure;
+      releaseSavepoint(savepoint);
+      return result;
+    } catch (SQLException | RuntimeException e) {
+      rollback(savepoint);
+      throw e;
+    }
+  }
+
+  void failed(SQLException e) {
+    if (failure == null) failure = e;
+  }
+
+  /**
+   * Run an action once this transaction ended, whether it was committed or not.
+   */
+  void onEnd(Runnable action) {
+    endActions.add(action);
+  }
+
+  void commit() throws SQLException {
+    if (failure != null) throw failure;
+    if (rollbackOnly) connection.rollback();
+    else connection.commit();
+  }
+
+  void rollback(Throwable cause) {
+    try {
+      connection.rollback();
+    } catch (SQLException e) {
+      cause.addSuppressed(e);
+    }
+  }
+
+  void end() {
+    ended = true;
+    endActions.forEach(Runnable::run);
+  }
+
+  /**
+   * @return true if the failure is a lock timeout, deadlock or serialization failure, after
+   * which the whole transaction can be run again.
+   */
+  static boolean isRetryable(SQLException e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (!(t instanceof SQLException)) continue;
+      SQLException sqlException = (SQLException) t;
+      int code = sqlException.getErrorCode();
+      String state = sqlException.getSQLState();
+      // H2's LOCK_TIMEOUT_1 and DEADLOCK_1, SQLite's BUSY and LOCKED, and the standard serialization failure.
+      if (code == 50200 || code == 40001 || code == 5 || code == 6) return true;
+      if (state != null && state.startsWith("40")) return true;
+    }
+    return false;
+  }
+
+  private class Binding implements InvocationHandler {
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+        case "commit":
+        case "setAutoCommit":
+          return null;
+        case "getAutoCommit":
+          return false;
+        case "isClosed":
+          return ended || connection.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Transaction" + connection.toString();
+        default:
+          if (ended)
+            throw new SQLException("This transaction has already ended.");
+          switch (method.getName()) {
+            case "rollback":
+              if (args == null) failed(new SQLException("The transaction was rolled back by one of its statements."));
+              else rollback((Savepoint) args[0]);
+              return null;
+            case "setSavepoint":
+              return args == null ? setSavepoint() : setSavepoint((String) args[0]);
+            case "releaseSavepoint":
+              releaseSavepoint((Savepoint) args[0]);
+              return null;
+            default:
+              try {
+                return method.invoke(connection, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+          }
+      }
+    }
+  }
+}
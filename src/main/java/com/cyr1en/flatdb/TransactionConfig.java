@@ -0,0 +1,94 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Isolation and retry settings of {@link Database#inTransaction(TransactionConfig, TransactionWork)}.
+ */
+public class TransactionConfig {
+
+  /**
+   * Leaves the isolation level of the connection as the driver set it up.
+   */
+  public static final int DEFAULT_ISOLATION = -1;
+
+  @Getter private int isolation;
+  @Getter private int maxRetries;
+  @Getter private long initialBackoffMillis;
+  @Getter private long maxBackoffMillis;
+
+  public TransactionConfig() {
+    isolation = DEFAULT_ISOLATION;
+    maxRetries = 3;
+    initialBackoffMillis = 10;
+    maxBackoffMillis = 1000;
+  }
+
+  /**
+   * @param isolation one of the {@link Connection} TRANSACTION_ constants, or {@link #DEFAULT_ISOLATION}.
+   */
+  public TransactionConfig setIsolation(int isolation) {
+    this.isolation = isolation;
+    return this;
+  }
+
+  /**
+   * Run a transaction up to this many more times when it failed on a lock timeout or deadlock.
+   */
+  public TransactionConfig setMaxRetries(int maxRetries) {
+    if (maxRetries < 0)
+      throw new IllegalArgumentException("The number of retries cannot be negative!");
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * The wait before a retry doubles with every attempt, from the initial backoff up to the
+   * max backoff, and a random part of it is skipped so retries of colliding transactions
+   * don't collide again.
+   */
+  public TransactionConfig setBackoff(long initial, long max, TimeUnit unit) {
+    if (initial < 0 || max < initial)
+      throw new IllegalArgumentException("The backoff must be positive and the max can't be below the initial backoff!");
+    this.initialBackoffMillis = unit.toMillis(initial);
+    this.maxBackoffMillis = unit.toMillis(max);
+    return this;
+  }
+
+  /**
+   * @param attempt the attempt that failed, starting at 1.
+   * @return how many milliseconds to wait before the next attempt.
+   */
+  long backoffMillis(int attempt) {
+    long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+    return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+  }
+}
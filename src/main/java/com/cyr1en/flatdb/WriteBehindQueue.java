@@ -0,0 +1,236 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.pool.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues updates in memory and commits them in groups on a single writer thread.
+ *
+ * <p>A group is committed as soon as it has {@code maxBatch} statements, its first statement
+ * has waited for {@code maxDelayMillis}, or {@link #flush()} was called. The future of every
+ * update completes once its group was committed, which makes it the update's durability
+ * callback. If a statement of a group fails, the group is rolled back and its statements are
+ * retried one by one so only the failing statement's future fails.</p>
+ *
+ * <p>Updates that are still queued when the JVM exits without {@link #close()} are lost.</p>
+ */
+class WriteBehindQueue implements AutoCloseable {
+
+  private final ConnectionPool pool;
+  private final Instrumentation instrumentation;
+  private final int maxBatch;
+  private final long maxDelayMillis;
+  private final BlockingQueue<Write> queue;
+  private final Thread writer;
+  private final LongAdder commits;
+  private final LongAdder writes;
+  private volatile boolean running;
+
+  WriteBehindQueue(ConnectionPool pool, Instrumentation instrumentation, int maxBatch, long maxDelayMillis, int capacity) {
+    this.pool = pool;
+    this.instrumentation = instrumentation;
+    this.maxBatch = maxBatch;
+    this.maxDelayMillis = maxDelayMillis;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.commits = new LongAdder();
+    this.writes = new LongAdder();
+    this.running = true;
+    this.writer = new Thread(this::run, "FlatDB-Write-Behind");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  /**
+   * Queue an update. Blocks while the queue is full.
+   *
+   * @return a future that completes with the number of affected rows once the update was committed.
+   */
+  CompletableFuture<Integer> submit(String sql, Object... params) {
+    return enqueue(new Write(sql, params));
+  }
+
+  /**
+   * @return a future that completes once every update queued before it was committed.
+   */
+  CompletableFuture<Void> flush() {
+    return enqueue(new Write(null, null)).thenApply(i -> null);
+  }
+
+  /**
+   * @return how many groups were committed so far.
+   */
+  long getCommitCount() {
+    return commits.sum();
+  }
+
+  /**
+   * @return how many updates were committed so far.
+   */
+  long getWriteCount() {
+    return writes.sum();
+  }
+
+  private CompletableFuture<Integer> enqueue(Write write) {
+    if (!running) {
+      write.future.completeExceptionally(new IllegalStateException("The write-behind queue has been closed."));
+      return write.future;
+    }
+    try {
+      queue.put(write);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      write.future.completeExceptionally(e);
+      return write.future;
+    }
+    // close() may have drained the queue while this write was being put. If neither the writer
+    // nor close() took it, nothing else will complete it.
+    if (!running && queue.remove(write))
+      write.future.completeExceptionally(new IllegalStateException("The write-behind queue has been closed."));
+    return write.future;
+  }
+
+  private void run() {
+    List<Write> group = new ArrayList<>(maxBatch);
+    while (running || !queue.isEmpty()) {
+      try {
+        Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) continue;
+        group.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        while (!first.isFlush() && group.size() < maxBatch) {
+          Write next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) break;
+          group.add(next);
+          if (next.isFlush()) break;
+        }
+        commit(group);
+      } catch (InterruptedException e) {
+        running = false;
+        if (!group.isEmpty()) commit(group);
+      } catch (RuntimeException e) {
+        e.printStackTrace();
+        group.forEach(w -> w.future.completeExceptionally(e));
+      } finally {
+        group.clear();
+      }
+    }
+  }
+
+  private void commit(List<Write> group) {
+    int[] counts = new int[group.size()];
+    try (Connection connection = pool.getConnection()) {
+      connection.setAutoCommit(false);
+      try {
+        for (int i = 0; i < group.size(); i++)
+          if (!group.get(i).isFlush())
+            counts[i] = execute(connection, group.get(i));
+        connection.commit();
+      } catch (SQLException e) {
+        connection.rollback();
+        connection.setAutoCommit(true);
+        commitOneByOne(connection, group);
+        return;
+      }
+    } catch (SQLException e) {
+      group.forEach(w -> w.future.completeExceptionally(e));
+      return;
+    }
+    commits.increment();
+    for (int i = 0; i < group.size(); i++) {
+      if (!group.get(i).isFlush()) writes.increment();
+      group.get(i).future.complete(counts[i]);
+    }
+  }
+
+  private void commitOneByOne(Connection connection, List<Write> group) {
+    for (Write write : group) {
+      if (write.isFlush()) {
+        write.future.complete(0);
+        continue;
+      }
+      try {
+        int count = execute(connection, write);
+        commits.increment();
+        writes.increment();
+        write.future.complete(count);
+      } catch (SQLException e) {
+        write.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private int execute(Connection connection, Write write) throws SQLException {
+    try (PreparedStatement statement = FlatDatabase.prepare(connection, write.sql, write.params)) {
+      return instrumentation.record(write.sql, write.params, StatementKind.UPDATE, statement::executeUpdate, n -> n);
+    }
+  }
+
+  /**
+   * Commits everything that is still queued and stops the writer thread.
+   */
+  @Override
+  public void close() {
+    if (!running) return;
+    running = false;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    Write write;
+    while ((write = queue.poll()) != null)
+      write.future.completeExceptionally(new IllegalStateException("The write-behind queue has been closed."));
+  }
+
+  private static class Write {
+
+    private final String sql;
+    private final Object[] params;
+    private final CompletableFuture<Integer> future;
+
+    private Write(String sql, Object[] params) {
+      this.sql = sql;
+      this.params = params;
+      this.future = new CompletableFuture<>();
+    }
+
+    private boolean isFlush() {
+      return sql == null;
+    }
+  }
+}
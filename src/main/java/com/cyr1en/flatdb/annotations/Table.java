@@ -6,4 +6,20 @@ import java.lang.annotation.RetentionPolicy;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Table {
   String nameOverride() default "";
+
+  /**
+   * How many rows {@link com.cyr1en.flatdb.FlatTable#findById(Object)} keeps cached by primary key.
+   *
+   * <p>0 disables the cache. The least recently used rows are evicted first.</p>
+   *
+   * @return the maximum number of cached rows.
+   */
+  long cacheSize() default 0;
+
+  /**
+   * How long a cached row stays valid after it was read, in seconds. 0 keeps it until it's evicted.
+   *
+   * @return the time to live of a cached row.
+   */
+  long cacheExpireAfterWrite() default 0;
 }
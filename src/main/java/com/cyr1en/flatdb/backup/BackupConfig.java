@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.backup;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the scheduled backups of a {@link com.cyr1en.flatdb.Database}.
+ */
+public class BackupConfig {
+
+  @Getter private Path directory;
+  @Getter private String filePrefix;
+  @Getter private long intervalMillis;
+  @Getter private int retention;
+
+  public BackupConfig() {
+    directory = Paths.get("backups");
+    filePrefix = "flatdb-";
+    intervalMillis = 0;
+    retention = 7;
+  }
+
+  public BackupConfig setDirectory(Path directory) {
+    this.directory = directory;
+    return this;
+  }
+
+  /**
+   * Scheduled backups are named with this prefix followed by the time they were started.
+   */
+  public BackupConfig setFilePrefix(String filePrefix) {
+    this.filePrefix = filePrefix;
+    return this;
+  }
+
+  /**
+   * Back the database up every interval, starting one interval after it was built. Zero, the
+   * default, only tracks the metrics of backups that are started by hand.
+   */
+  public BackupConfig setInterval(long interval, TimeUnit unit) {
+    this.intervalMillis = Math.max(0, unit.toMillis(interval));
+    return this;
+  }
+
+  /**
+   * Keep the newest scheduled backups only and delete older ones.
+   */
+  public BackupConfig setRetention(int retention) {
+    if (retention < 1)
+      throw new IllegalArgumentException("At least one backup has to be kept!");
+    this.retention = retention;
+    return this;
+  }
+}
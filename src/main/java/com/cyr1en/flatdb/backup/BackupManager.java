@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.backup;
+
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.StatementEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Takes online backups of a database and restores them while it is closed.
+ *
+ * <p>A backup runs on its own connection that doesn't come from the pool, so it never takes a
+ * connection away from regular queries. On H2 it uses BACKUP TO, which copies a transactionally
+ * consistent state of the database without locking it; on SQLite it uses the driver's online
+ * backup. Backups are written to a temporary file first and moved in place once they are complete.</p>
+ */
+public class BackupManager implements DatabaseListener, AutoCloseable {
+
+  private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+  private final String url;
+  private final String driverName;
+  private final BackupConfig config;
+  private final BackupMetrics metrics;
+  private final AtomicInteger running;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param config the scheduled backups, or null if backups are only taken by hand.
+   */
+  public BackupManager(String url, String driverName, BackupConfig config) {
+    this.url = url;
+    this.driverName = driverName;
+    this.config = config;
+    this.metrics = new BackupMetrics();
+    this.running = new AtomicInteger();
+    if (config != null && config.getIntervalMillis() > 0) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "FlatDB-Backup");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(this::scheduledBackup, config.getIntervalMillis(),
+              config.getIntervalMillis(), TimeUnit.MILLISECONDS);
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  public BackupMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Back the database up to a file, replacing the file if it exists.
+   *
+   * @throws SQLFeatureNotSupportedException if the driver isn't H2 or SQLite.
+   */
+  public synchronized void backup(Path file) throws SQLException {
+    Path partial = file.resolveSibling(file.getFileName() + ".part");
+    String backupSql = backupSql(partial);
+    running.incrementAndGet();
+    long start = System.nanoTime();
+    try (Connection connection = DriverManager.getConnection(url);
+         Statement statement = connection.createStatement()) {
+      if (file.toAbsolutePath().getParent() != null)
+        Files.createDirectories(file.toAbsolutePath().getParent());
+      statement.execute(backupSql);
+      Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      metrics.recordBackup(System.nanoTime() - start, Files.size(file));
+    } catch (SQLException | IOException e) {
+      metrics.recordFailure();
+      try {
+        Files.deleteIfExists(partial);
+      } catch (IOException ignored) {
+      }
+      if (e instanceof SQLException) throw (SQLException) e;
+      throw new SQLException("Could not write the backup " + file + "!", e);
+    } finally {
+      running.decrementAndGet();
+    }
+  }
+
+  private String backupSql(Path file) throws SQLException {
+    String quoted = "'" + file.toAbsolutePath().toString().replace("'", "''") + "'";
+    if (driverName.equalsIgnoreCase("h2")) return "BACKUP TO " + quoted;
+    if (driverName.equalsIgnoreCase("sqlite")) return "backup to " + quoted;
+    throw new SQLFeatureNotSupportedException("Backups are not supported for " + driverName + "!");
+  }
+
+  private void scheduledBackup() {
+    String extension = driverName.equalsIgnoreCase("h2") ? ".zip" : ".db";
+    Path file = config.getDirectory().resolve(config.getFilePrefix() + LocalDateTime.now().format(TIMESTAMP) + extension);
+    try {
+      backup(file);
+      prune(extension);
+    } catch (SQLException | IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Delete the oldest scheduled backups beyond the retention. Backup names sort by the time they
+   * were taken.
+   */
+  private void prune(String extension) throws IOException {
+    List<Path> backups = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(config.getDirectory(),
+            config.getFilePrefix() + "*" + extension)) {
+      files.forEach(backups::add);
+    }
+    if (backups.size() <= config.getRetention()) return;
+    Collections.sort(backups);
+    for (Path old : backups.subList(0, backups.size() - config.getRetention()))
+      Files.deleteIfExists(old);
+  }
+
+  @Override
+  public void afterStatement(StatementEvent event) {
+    metrics.recordForeground(event.getDurationNanos(), running.get() > 0);
+  }
+
+  /**
+   * Stops the scheduled backups, waiting for one that is running to finish.
+   */
+  @Override
+  public void close() {
+    if (scheduler == null) return;
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Replace the files of a closed database with a backup.
+   *
+   * <p>The files of an H2 backup are renamed after the database, so a backup can be restored
+   * into a database with another name.</p>
+   *
+   * @param backup       a file written by {@link #backup(Path)}.
+   * @param driverName   the driver of the database, "h2" or "sqlite".
+   * @param databasePath the path of the database as it was given to the builder.
+   * @throws IOException if the backup couldn't be read or the database isn't stored in a local file.
+   */
+  public static void restore(Path backup, String driverName, String databasePath) throws IOException {
+    String file = databasePath.split(";", 2)[0];
+    if (file.startsWith("file:")) file = file.substring("file:".length());
+    if (file.isEmpty() || file.startsWith("mem:") || file.startsWith("tcp:") || file.startsWith("ssl:"))
+      throw new IOException("Only databases that are stored in a local file can be restored!");
+    if (file.startsWith("~")) file = System.getProperty("user.home") + file.substring(1);
+    Path target = Paths.get(file).toAbsolutePath();
+    if (target.getParent() != null) Files.createDirectories(target.getParent());
+
+    if (driverName.equalsIgnoreCase("sqlite")) {
+      Files.copy(backup, target, StandardCopyOption.REPLACE_EXISTING);
+      return;
+    }
+    if (!driverName.equalsIgnoreCase("h2"))
+      throw new IOException("Restoring is not supported for " + driverName + "!");
+    boolean restored = false;
+    try (InputStream in = Files.newInputStream(backup); ZipInputStream zip = new ZipInputStream(in)) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        String name = Paths.get(entry.getName()).getFileName().toString();
+        for (String suffix : new String[]{".mv.db", ".h2.db"}) {
+          if (entry.isDirectory() || !name.endsWith(suffix)) continue;
+          Files.copy(zip, target.resolveSibling(target.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+          restored = true;
+        }
+      }
+    }
+    if (!restored) throw new IOException(backup + " doesn't contain an H2 database!");
+  }
+}
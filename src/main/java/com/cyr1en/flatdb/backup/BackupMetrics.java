@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.backup;
+
+import com.cyr1en.flatdb.metrics.LatencyHistogram;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of the backups of a {@link com.cyr1en.flatdb.Database}.
+ *
+ * <p>The foreground latency histograms are only filled if a {@link BackupConfig} was set on the
+ * {@link com.cyr1en.flatdb.DatabaseBuilder}. Every statement is then recorded in one of them,
+ * depending on whether a backup was running when it finished, so they show how much backups slow
+ * down regular queries.</p>
+ */
+public class BackupMetrics {
+
+  private final LongAdder backups;
+  private final LongAdder failures;
+  private final LongAdder totalNanos;
+  private final AtomicLong maxNanos;
+  private volatile long lastNanos;
+  private volatile long lastSize;
+  private volatile long lastMillis;
+  private final LatencyHistogram duringBackup;
+  private final LatencyHistogram outsideBackup;
+
+  BackupMetrics() {
+    backups = new LongAdder();
+    failures = new LongAdder();
+    totalNanos = new LongAdder();
+    maxNanos = new AtomicLong();
+    duringBackup = new LatencyHistogram();
+    outsideBackup = new LatencyHistogram();
+  }
+
+  void recordBackup(long nanos, long size) {
+    backups.increment();
+    totalNanos.add(nanos);
+    lastNanos = nanos;
+    lastSize = size;
+    lastMillis = System.currentTimeMillis();
+    long max;
+    while (nanos > (max = maxNanos.get()))
+      if (maxNanos.compareAndSet(max, nanos)) break;
+  }
+
+  void recordFailure() {
+    failures.increment();
+  }
+
+  void recordForeground(long nanos, boolean backupRunning) {
+    (backupRunning ? duringBackup : outsideBackup).record(nanos);
+  }
+
+  public long getBackupCount() {
+    return backups.sum();
+  }
+
+  public long getFailureCount() {
+    return failures.sum();
+  }
+
+  public long getLastDuration(TimeUnit unit) {
+    return unit.convert(lastNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getMaxDuration(TimeUnit unit) {
+    return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public double getAverageDuration(TimeUnit unit) {
+    long count = backups.sum();
+    if (count == 0) return 0;
+    return (double) totalNanos.sum() / count / unit.toNanos(1);
+  }
+
+  /**
+   * @return the size in bytes of the last successful backup.
+   */
+  public long getLastBackupSize() {
+    return lastSize;
+  }
+
+  public Optional<Instant> getLastBackupTime() {
+    long millis = lastMillis;
+    return millis == 0 ? Optional.empty() : Optional.of(Instant.ofEpochMilli(millis));
+  }
+
+  /**
+   * @return the latency of statements that finished while a backup was running.
+   */
+  public LatencyHistogram getForegroundLatencyDuringBackup() {
+    return duringBackup;
+  }
+
+  /**
+   * @return the latency of statements that finished while no backup was running.
+   */
+  public LatencyHistogram getForegroundLatencyOutsideBackup() {
+    return outsideBackup;
+  }
+
+  /**
+   * @return how many times slower statements were at the given percentile while a backup was running,
+   * or 0 if there aren't samples of both.
+   */
+  public double getLatencyImpact(double percentile) {
+    if (duringBackup.getCount() == 0 || outsideBackup.getCount() == 0) return 0;
+    long outside = outsideBackup.getPercentile(percentile, TimeUnit.NANOSECONDS);
+    if (outside == 0) return 0;
+    return (double) duringBackup.getPercentile(percentile, TimeUnit.NANOSECONDS) / outside;
+  }
+
+  @Override
+  public String toString() {
+    return "BackupMetrics{backups=" + getBackupCount() +
+            ", failures=" + getFailureCount() +
+            ", lastMs=" + getLastDuration(TimeUnit.MILLISECONDS) +
+            ", maxMs=" + getMaxDuration(TimeUnit.MILLISECONDS) +
+            ", lastSize=" + getLastBackupSize() +
+            ", p99Impact=" + getLatencyImpact(99) + "}";
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size and expiry of a cache.
+ *
+ * <p>A cache drops its least recently used entries once it holds more than
+ * {@link #getMaximumSize()} entries, and every entry that was written longer
+ * than {@link #getExpireAfterWriteMillis()} ago. An expiry of 0 never expires.</p>
+ */
+public class CacheSpec {
+
+  @Getter private final long maximumSize;
+  @Getter private final long expireAfterWriteMillis;
+
+  private CacheSpec(long maximumSize, long expireAfterWriteMillis) {
+    this.maximumSize = maximumSize;
+    this.expireAfterWriteMillis = expireAfterWriteMillis;
+  }
+
+  public static CacheSpec of(long maximumSize) {
+    return of(maximumSize, 0, TimeUnit.MILLISECONDS);
+  }
+
+  public static CacheSpec of(long maximumSize, long expireAfterWrite, TimeUnit unit) {
+    if (maximumSize < 1)
+      throw new IllegalArgumentException("A cache must be able to hold at least 1 entry!");
+    return new CacheSpec(maximumSize, Math.max(0, unit.toMillis(expireAfterWrite)));
+  }
+
+  /**
+   * Build a Guava {@link Cache} that follows this spec and records its statistics.
+   */
+  public <K, V> Cache<K, V> build() {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats();
+    if (expireAfterWriteMillis > 0)
+      builder.expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS);
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    return "CacheSpec{maximumSize=" + maximumSize + ", expireAfterWriteMillis=" + expireAfterWriteMillis + "}";
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.cache;
+
+import com.cyr1en.flatdb.util.SqlText;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import javax.sql.rowset.CachedRowSet;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of read-only queries, keyed by their normalized SQL and parameters.
+ *
+ * <p>Results are kept as disconnected {@link CachedRowSet}s that are never handed out
+ * themselves. Every hit gets a read-only view with its own cursor over the cached rows, made
+ * with {@link CachedRowSet#createShared()} instead of copying them, so callers can't change
+ * what's cached. The cache is bounded by the estimated size of the cached rows.</p>
+ *
+ * <p>Every cached result remembers which tables it read, recognized by the database's table
+ * prefix. An update invalidates the results that read a table it touches. Results and updates
+ * that don't name any prefixed table can't be tracked, so they invalidate conservatively.</p>
+ */
+public class QueryResultCache {
+
+  private final String tablePrefix;
+  private final Cache<Key, Snapshot> cache;
+  private final AtomicLong generation;
+
+  public QueryResultCache(String tablePrefix, long maximumBytes) {
+    this.tablePrefix = tablePrefix;
+    this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes)
+            .weigher((Key key, Snapshot snapshot) -> snapshot.weight)
+            .recordStats()
+            .build();
+    this.generation = new AtomicLong();
+  }
+
+  /**
+   * Get the result of a query from the cache, or load and cache it.
+   *
+   * <p>Only SELECT and WITH queries are cached; anything else is always loaded.</p>
+   */
+  public ResultSet get(String sql, Object[] params, Loader loader) throws SQLException {
+    String normalized = SqlText.normalize(sql);
+    if (!isCacheable(normalized)) return loader.load();
+    Key key = new Key(normalized, params);
+    Snapshot snapshot = cache.getIfPresent(key);
+    if (snapshot == null) {
+      long loadedAt = generation.get();
+      snapshot = new Snapshot(loader.load(), SqlText.tables(normalized, tablePrefix));
+      cache.put(key, snapshot);
+      if (generation.get() != loadedAt) cache.invalidate(key);
+    }
+    return snapshot.view();
+  }
+
+  /**
+   * Invalidate the results that read a table the given update touches.
+   */
+  public void invalidate(String sql) {
+    invalidateTables(SqlText.tables(sql, tablePrefix));
+  }
+
+  /**
+   * Invalidate the results that read one of the given tables, or every result if no table is given.
+   */
+  public void invalidateTables(Set<String> tables) {
+    generation.incrementAndGet();
+    if (tables.isEmpty()) {
+      cache.invalidateAll();
+      return;
+    }
+    cache.asMap().values().removeIf(s -> s.tables.isEmpty() || s.tables.stream().anyMatch(tables::contains));
+  }
+
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  private static boolean isCacheable(String sql) {
+    return sql.regionMatches(true, 0, "SELECT", 0, 6) || sql.regionMatches(true, 0, "WITH", 0, 4);
+  }
+
+  @FunctionalInterface
+  public interface Loader {
+    CachedRowSet load() throws SQLException;
+  }
+
+  private static class Key {
+
+    private final String sql;
+    private final Object[] params;
+    private final int hash;
+
+    private Key(String sql, Object[] params) {
+      this.sql = sql;
+      this.params = params.clone();
+      this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(this.params);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return hash == key.hash && sql.equals(key.sql) && Arrays.deepEquals(params, key.params);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private static class Snapshot {
+
+    private final CachedRowSet rows;
+    private final Set<String> tables;
+    private final int weight;
+
+    private Snapshot(CachedRowSet rows, Set<String> tables) throws SQLException {
+      this.rows = rows;
+      this.tables = tables;
+      this.weight = weigh(rows);
+    }
+
+    /**
+     * Roughly estimate how many bytes the rows take up on the heap.
+     */
+    private static int weigh(CachedRowSet rows) throws SQLException {
+      int columns = rows.getMetaData().getColumnCount();
+      long weight = 256;
+      rows.beforeFirst();
+      while (rows.next()) {
+        weight += 32 + 8L * columns;
+        for (int i = 1; i <= columns; i++) {
+          Object value = rows.getObject(i);
+          if (value instanceof String) weight += 40 + 2L * ((String) value).length();
+          else if (value instanceof byte[]) weight += 16 + ((byte[]) value).length;
+          else if (value != null) weight += 24;
+        }
+      }
+      rows.beforeFirst();
+      return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    private ResultSet view() throws SQLException {
+      return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+              new Class<?>[]{ResultSet.class}, new ReadOnlyView(rows.createShared()));
+    }
+  }
+
+  /**
+   * A cursor over cached rows that rejects changes to them. Closing it must not reach the shared
+   * row set, whose close() would clear the rows of every view.
+   */
+  private static class ReadOnlyView implements InvocationHandler {
+
+    private final ResultSet rows;
+    private boolean closed;
+
+    private ReadOnlyView(ResultSet rows) {
+      this.rows = rows;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      switch (name) {
+        case "close":
+          closed = true;
+          return null;
+        case "isClosed":
+          return closed;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "ReadOnlyView{closed=" + closed + "}";
+        case "unwrap":
+          if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+          throw new SQLException("Not a wrapper for " + args[0] + ".");
+        case "isWrapperFor":
+          return ((Class<?>) args[0]).isInstance(proxy);
+        default:
+          if (closed)
+            throw new SQLException("This result set has already been closed.");
+          if (name.startsWith("update") || name.equals("insertRow") || name.equals("deleteRow") ||
+                  name.equals("moveToInsertRow") || name.equals("cancelRowUpdates") || name.equals("refreshRow"))
+            throw new SQLFeatureNotSupportedException("Cached query results are read-only.");
+          try {
+            return method.invoke(rows, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+      }
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.concurrent;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database calls off the caller's thread and limits how many of them can be pending.
+ *
+ * <p>A pending task is one that was submitted but hasn't finished yet, whether it is still
+ * queued or already running. Once {@code maxPending} tasks are pending, new tasks are rejected
+ * or block the caller depending on the {@link BackpressurePolicy}.</p>
+ *
+ * <p>Unless an {@link ExecutorService} is supplied, one is created on first use: a virtual
+ * thread per task on Java 21 and newer, or a bounded pool of daemon platform threads otherwise.</p>
+ */
+@Log
+public class AsyncExecutor implements AutoCloseable {
+
+  @Getter private final int maxPending;
+  @Getter private final BackpressurePolicy policy;
+  private final int threads;
+  private final boolean ownsExecutor;
+  private final Semaphore pending;
+  private volatile ExecutorService executor;
+  private volatile boolean closed;
+
+  public AsyncExecutor(ExecutorService executor, int threads, int maxPending, BackpressurePolicy policy) {
+    this.executor = executor;
+    this.ownsExecutor = executor == null;
+    this.threads = threads;
+    this.maxPending = maxPending;
+    this.policy = policy;
+    this.pending = new Semaphore(maxPending);
+  }
+
+  /**
+   * Run a task asynchronously.
+   *
+   * @param task the task to run.
+   * @return a future that completes with the result of the task, or exceptionally with whatever
+   * the task threw or a {@link RejectedExecutionException} if there were too many pending tasks
+   * or this executor was closed.
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> task) {
+    return submit(task, new CompletableFuture<>());
+  }
+
+  /**
+   * Run a task asynchronously and complete the given future with its outcome.
+   *
+   * @return the given future.
+   */
+  public <T, F extends CompletableFuture<T>> F submit(Callable<T> task, F future) {
+    try {
+      acquire();
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+    try {
+      getExecutor().execute(() -> {
+        try {
+          future.complete(task.call());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        } finally {
+          pending.release();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pending.release();
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private void acquire() {
+    if (closed) throw closedException();
+    if (pending.tryAcquire()) {
+      checkOpen();
+      return;
+    }
+    if (policy == BackpressurePolicy.REJECT)
+      throw new RejectedExecutionException("There are already " + maxPending + " pending database tasks.");
+    try {
+      pending.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException("Interrupted while waiting to submit a database task.", e);
+    }
+    checkOpen();
+  }
+
+  private void checkOpen() {
+    if (!closed) return;
+    pending.release();
+    throw closedException();
+  }
+
+  private static RejectedExecutionException closedException() {
+    return new RejectedExecutionException("The database has been closed.");
+  }
+
+  /**
+   * @return how many submitted tasks haven't finished yet.
+   */
+  public int getPending() {
+    return maxPending - pending.availablePermits();
+  }
+
+  private ExecutorService getExecutor() {
+    ExecutorService service = executor;
+    if (service != null) return service;
+    synchronized (this) {
+      if (closed) throw closedException();
+      if (executor == null)
+        executor = createExecutor(threads);
+      return executor;
+    }
+  }
+
+  private static ExecutorService createExecutor(int threads) {
+    try {
+      Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) virtual.invoke(null);
+    } catch (NoSuchMethodException ignored) {
+      // Virtual threads need Java 21.
+    } catch (ReflectiveOperationException e) {
+      e.printStackTrace();
+    }
+    AtomicInteger count = new AtomicInteger();
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "FlatDB-Async-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Rejects new tasks and waits up to a minute for the pending ones to finish, then shuts the
+   * executor down if it was created by this class. A supplied {@link ExecutorService} is left running.
+   */
+  @Override
+  public void close() {
+    ExecutorService service;
+    synchronized (this) {
+      if (closed) return;
+      closed = true;
+      service = executor;
+    }
+    try {
+      if (!pending.tryAcquire(maxPending, 1, TimeUnit.MINUTES))
+        log.warning(getPending() + " database tasks were still running when the executor was closed.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (ownsExecutor && service != null)
+      service.shutdown();
+  }
+}
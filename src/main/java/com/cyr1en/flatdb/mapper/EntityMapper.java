@@ -0,0 +1,58 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of a {@link com.cyr1en.flatdb.schema.TableSchema} to and from instances of its class.
+ *
+ * <p>Columns are always addressed by their position in
+ * {@link com.cyr1en.flatdb.schema.TableSchema#getColumns()}, never by their name.</p>
+ *
+ * @param <T> the class the table was declared with.
+ */
+public interface EntityMapper<T> {
+
+  /**
+   * Create an instance from the current row of a {@link ResultSet}.
+   *
+   * <p>The result set has to select every column of the schema, in schema order.</p>
+   *
+   * @param rs result set that is positioned on a row.
+   * @return the mapped instance.
+   */
+  T read(ResultSet rs) throws SQLException;
+
+  /**
+   * Read a column value from an instance.
+   *
+   * @param entity the instance to read from.
+   * @param column position of the column in the schema.
+   * @return the value of the column.
+   */
+  Object get(T entity, int column);
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.mapper;
+
+import com.cyr1en.flatdb.schema.TableSchema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates {@link EntityMapper}s and caches them per class, so the accessors of
+ * a class are only resolved once no matter how many databases use it.
+ *
+ * <p>Classes that have a {@link GeneratedTable} use it as their mapper; every other
+ * class gets a {@link ReflectiveMapper}.</p>
+ */
+public class EntityMappers {
+
+  private static final Map<Class<?>, EntityMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+  private EntityMappers() {
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> EntityMapper<T> forSchema(TableSchema<T> schema) {
+    return (EntityMapper<T>) MAPPERS.computeIfAbsent(schema.getType(), t ->
+            GeneratedTables.find(schema.getType()).<EntityMapper<T>>map(g -> g)
+                    .orElseGet(() -> new ReflectiveMapper<>(schema)));
+  }
+}
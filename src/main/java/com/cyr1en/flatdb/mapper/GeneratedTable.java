@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.mapper;
+
+import com.cyr1en.flatdb.schema.TableSchema;
+
+/**
+ * Implemented by the classes that FlatDB's annotation processor generates for every
+ * {@link com.cyr1en.flatdb.annotations.Table} class.
+ *
+ * <p>A generated class is named after the binary name of its table class with every '$'
+ * replaced by '_' and "_FlatDB" appended, e.g. {@code com.example.Outer_User_FlatDB}
+ * for {@code com.example.Outer.User}. It reads and writes fields directly, so neither
+ * the schema nor the rows need reflection.</p>
+ *
+ * @param <T> the class the table was declared with.
+ */
+public interface GeneratedTable<T> extends EntityMapper<T> {
+
+  String SUFFIX = "_FlatDB";
+
+  /**
+   * @return the name of the table without the database prefix.
+   */
+  String getTableName();
+
+  /**
+   * @param tableName the name of the table including the database prefix.
+   * @return the schema of the table.
+   */
+  TableSchema<T> getSchema(String tableName);
+
+  /**
+   * DDL that creates the table with all of its columns at once.
+   *
+   * @param tableName the name of the table including the database prefix.
+   * @return the CREATE TABLE statement, or null if a column type isn't known at compile time.
+   */
+  String getCreateTableSql(String tableName);
+}
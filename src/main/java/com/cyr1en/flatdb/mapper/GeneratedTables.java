@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.mapper;
+
+import java.util.Optional;
+
+/**
+ * Looks up the {@link GeneratedTable} of a class.
+ *
+ * <p>The lookup happens once per class; classes that weren't compiled with the
+ * annotation processor simply get an empty {@link Optional}.</p>
+ */
+public class GeneratedTables {
+
+  private static final ClassValue<Optional<GeneratedTable<?>>> GENERATED = new ClassValue<Optional<GeneratedTable<?>>>() {
+    @Override
+    protected Optional<GeneratedTable<?>> computeValue(Class<?> type) {
+      return load(type);
+    }
+  };
+
+  private GeneratedTables() {
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> Optional<GeneratedTable<T>> find(Class<T> type) {
+    return (Optional<GeneratedTable<T>>) (Optional<?>) GENERATED.get(type);
+  }
+
+  public static String generatedName(Class<?> type) {
+    String name = type.getName();
+    int dot = name.lastIndexOf('.');
+    return name.substring(0, dot + 1) + name.substring(dot + 1).replace('$', '_') + GeneratedTable.SUFFIX;
+  }
+
+  private static Optional<GeneratedTable<?>> load(Class<?> type) {
+    try {
+      Class<?> generated = Class.forName(generatedName(type), true, type.getClassLoader());
+      if (!GeneratedTable.class.isAssignableFrom(generated)) return Optional.empty();
+      return Optional.of((GeneratedTable<?>) generated.getDeclaredConstructor().newInstance());
+    } catch (ClassNotFoundException e) {
+      return Optional.empty();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      e.printStackTrace();
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.mapper;
+
+import com.cyr1en.flatdb.exceptions.MappingException;
+import com.cyr1en.flatdb.schema.ColumnSchema;
+import com.cyr1en.flatdb.schema.TableSchema;
+import com.google.common.primitives.Primitives;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@link EntityMapper} that accesses fields through {@link MethodHandle}s.
+ *
+ * <p>All handles are resolved once when the mapper is created and adapted to generic
+ * signatures, so mapping a row is a plain {@link MethodHandle#invokeExact} per column
+ * instead of a reflective {@link Field#get(Object)} call.</p>
+ */
+public class ReflectiveMapper<T> implements EntityMapper<T> {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+  private final Class<T> type;
+  private final MethodHandle constructor;
+  private final MethodHandle[] getters;
+  private final MethodHandle[] setters;
+  private final Class<?>[] columnTypes;
+  private final boolean[] primitive;
+
+  public ReflectiveMapper(TableSchema<T> schema) {
+    this.type = schema.getType();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    this.constructor = findConstructor(lookup);
+    List<ColumnSchema> columns = schema.getColumns();
+    this.getters = new MethodHandle[columns.size()];
+    this.setters = new MethodHandle[columns.size()];
+    this.columnTypes = new Class<?>[columns.size()];
+    this.primitive = new boolean[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      Field field = columns.get(i).getField();
+      if (field == null)
+        throw new MappingException(type, "the column " + columns.get(i).getName() + " is not backed by a field.");
+      field.setAccessible(true);
+      try {
+        getters[i] = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        setters[i] = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+      } catch (IllegalAccessException e) {
+        throw new MappingException(type, "the field " + field.getName() + " is not accessible.", e);
+      }
+      columnTypes[i] = Primitives.wrap(field.getType());
+      primitive[i] = field.getType().isPrimitive();
+    }
+  }
+
+  private MethodHandle findConstructor(MethodHandles.Lookup lookup) {
+    try {
+      Constructor<T> ctor = type.getDeclaredConstructor();
+      ctor.setAccessible(true);
+      return lookup.unreflectConstructor(ctor).asType(CONSTRUCTOR_TYPE);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public T read(ResultSet rs) throws SQLException {
+    if (constructor == null)
+      throw new MappingException(type, "it doesn't have an accessible no-args constructor.");
+    try {
+      Object entity = (Object) constructor.invokeExact();
+      for (int i = 0; i < setters.length; i++) {
+        Object value = rs.getObject(i + 1, columnTypes[i]);
+        if (value == null && primitive[i]) continue;
+        setters[i].invokeExact(entity, value);
+      }
+      return (T) entity;
+    } catch (SQLException | RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new MappingException(type, t.getMessage(), t);
+    }
+  }
+
+  @Override
+  public Object get(T entity, int column) {
+    try {
+      return (Object) getters[column].invokeExact((Object) entity);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new MappingException(type, t.getMessage(), t);
+    }
+  }
+}
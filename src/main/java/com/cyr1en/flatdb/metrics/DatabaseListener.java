@@ -0,0 +1,50 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+/**
+ * Receives an event before and after every statement that FlatDB executes.
+ *
+ * <p>Listeners are registered with {@link com.cyr1en.flatdb.DatabaseBuilder#addListener(DatabaseListener)}
+ * and are called on the thread that executes the statement, so they should return quickly.
+ * Exceptions thrown by a listener are logged and otherwise ignored.</p>
+ *
+ * <p>Statements that are executed on a connection from
+ * {@link com.cyr1en.flatdb.Database#getConnection()} are not reported.</p>
+ */
+public interface DatabaseListener {
+
+  /**
+   * Called right before a statement is executed. The event doesn't have a duration, row count or error yet.
+   */
+  default void beforeStatement(StatementEvent event) {
+  }
+
+  /**
+   * Called once a statement was executed or failed.
+   */
+  default void afterStatement(StatementEvent event) {
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with log-linear buckets, in the spirit of HdrHistogram.
+ *
+ * <p>Every power of two is split into {@value #SUB_BUCKETS} linear buckets, so any recorded
+ * value is reported within about 6% of its real value while the whole range of a long fits
+ * into under a thousand counters. Recording is a single atomic increment; reads don't block
+ * writers and may miss values that are recorded at the same time.</p>
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts;
+  private final LongAdder totalNanos;
+  private final AtomicLong maxNanos;
+
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+    this.totalNanos = new LongAdder();
+    this.maxNanos = new AtomicLong();
+  }
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(indexOf(value));
+    totalNanos.add(value);
+    long max;
+    while (value > (max = maxNanos.get()))
+      if (maxNanos.compareAndSet(max, value)) break;
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++)
+      count += counts.get(i);
+    return count;
+  }
+
+  public double getMean(TimeUnit unit) {
+    long count = getCount();
+    return count == 0 ? 0 : (double) totalNanos.sum() / count / unit.toNanos(1);
+  }
+
+  public long getMax(TimeUnit unit) {
+    return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * @param percentile between 0 and 100, i.e. 99.9 for the 99.9th percentile.
+   * @return the duration that the given percentage of recorded durations didn't exceed.
+   */
+  public long getPercentile(double percentile, TimeUnit unit) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++)
+      count += snapshot[i] = counts.get(i);
+    if (count == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        long value = Math.min(highestEquivalent(i), maxNanos.get());
+        return unit.convert(value, TimeUnit.NANOSECONDS);
+      }
+    }
+    return getMax(unit);
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++)
+      counts.set(i, 0);
+    totalNanos.reset();
+    maxNanos.set(0);
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static long highestEquivalent(int index) {
+    if (index < SUB_BUCKETS) return index;
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{count=" + getCount() +
+            ", meanMs=" + getMean(TimeUnit.MILLISECONDS) +
+            ", p50Us=" + getPercentile(50, TimeUnit.MICROSECONDS) +
+            ", p99Us=" + getPercentile(99, TimeUnit.MICROSECONDS) +
+            ", maxUs=" + getMax(TimeUnit.MICROSECONDS) + "}";
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import com.cyr1en.flatdb.Database;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DatabaseListener} that writes statements slower than a threshold to a rotating log file.
+ *
+ * <p>The plan of a slow statement is captured with EXPLAIN on a separate pooled connection and a
+ * background thread, so the statement's caller isn't slowed down any further. On H2, queries are
+ * explained with EXPLAIN ANALYZE, which runs them once more. A rate limit bounds how many entries,
+ * and therefore how many EXPLAINs, can happen per second.</p>
+ */
+public class SlowQueryLog implements DatabaseListener, AutoCloseable {
+
+  private final SlowQueryLogConfig config;
+  private final Database database;
+  private final String driverName;
+  private final FileHandler handler;
+  private final Logger logger;
+  private final RateLimiter rateLimiter;
+  private final ThreadPoolExecutor explainer;
+  private final AtomicLong suppressed;
+
+  public SlowQueryLog(SlowQueryLogConfig config, Database database, String driverName) throws IOException {
+    this.config = config;
+    this.database = database;
+    this.driverName = driverName;
+    File parent = new File(config.getLogFile()).getParentFile();
+    if (parent != null && !parent.getPath().contains("%")) parent.mkdirs();
+    this.handler = new FileHandler(config.getLogFile(), config.getMaxFileSize(), config.getFileCount(), true);
+    this.handler.setFormatter(new EntryFormatter());
+    this.logger = Logger.getAnonymousLogger();
+    this.logger.setUseParentHandlers(false);
+    this.logger.addHandler(handler);
+    this.rateLimiter = RateLimiter.create(config.getMaxEntriesPerSecond());
+    this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(config.getMaxPendingExplains()), r -> {
+      Thread thread = new Thread(r, "FlatDB-Slow-Query-Explain");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.suppressed = new AtomicLong();
+  }
+
+  @Override
+  public void afterStatement(StatementEvent event) {
+    if (event.getDurationNanos() < config.getThresholdNanos()) return;
+    if (!rateLimiter.tryAcquire()) {
+      suppressed.incrementAndGet();
+      return;
+    }
+    long skipped = suppressed.getAndSet(0);
+    String explainSql = explainSql(event);
+    if (explainSql == null) {
+      write(event, skipped, null);
+      return;
+    }
+    try {
+      explainer.execute(() -> write(event, skipped, explain(explainSql, event.getParams())));
+    } catch (RejectedExecutionException e) {
+      write(event, skipped, "(not captured, too many pending EXPLAINs)");
+    }
+  }
+
+  /**
+   * @return the EXPLAIN statement for an event, or null if its plan can't be captured.
+   */
+  private String explainSql(StatementEvent event) {
+    if (!config.isExplain() || event.isFailed()) return null;
+    if (event.getKind() != StatementKind.QUERY && event.getKind() != StatementKind.UPDATE) return null;
+    if (driverName.equalsIgnoreCase("h2"))
+      return (event.getKind() == StatementKind.QUERY ? "EXPLAIN ANALYZE " : "EXPLAIN ") + event.getSql();
+    if (driverName.equalsIgnoreCase("sqlite"))
+      return "EXPLAIN QUERY PLAN " + event.getSql();
+    return null;
+  }
+
+  private String explain(String explainSql, List<Object> params) {
+    try (Connection connection = database.getConnection();
+         PreparedStatement statement = connection.prepareStatement(explainSql)) {
+      for (int i = 0; i < params.size(); i++)
+        statement.setObject(i + 1, params.get(i));
+      StringJoiner plan = new StringJoiner(System.lineSeparator());
+      try (ResultSet rs = statement.executeQuery()) {
+        int columns = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+          StringJoiner row = new StringJoiner(" | ");
+          for (int i = 1; i <= columns; i++)
+            row.add(String.valueOf(rs.getObject(i)));
+          plan.add(row.toString());
+        }
+      }
+      return plan.toString();
+    } catch (SQLException e) {
+      return "(not captured, " + e.getMessage() + ")";
+    }
+  }
+
+  private void write(StatementEvent event, long skipped, String plan) {
+    StringBuilder sb = new StringBuilder()
+            .append(event.getDuration(TimeUnit.MILLISECONDS)).append(" ms ")
+            .append(event.getKind()).append(" rows=").append(event.getRowCount())
+            .append(System.lineSeparator()).append(event.getSql());
+    if (!event.getParams().isEmpty())
+      sb.append(System.lineSeparator()).append("params: ").append(event.getParams());
+    event.getError().ifPresent(e -> sb.append(System.lineSeparator()).append("error: ").append(e.getMessage()));
+    if (plan != null)
+      sb.append(System.lineSeparator()).append("plan:").append(System.lineSeparator()).append(plan);
+    if (skipped > 0)
+      sb.append(System.lineSeparator()).append(skipped).append(" slow statements before this one were not logged (rate limit)");
+    logger.log(Level.WARNING, sb.toString());
+  }
+
+  /**
+   * Waits briefly for pending EXPLAINs and closes the log file.
+   */
+  @Override
+  public void close() {
+    explainer.shutdown();
+    try {
+      if (!explainer.awaitTermination(1, TimeUnit.SECONDS))
+        explainer.shutdownNow();
+    } catch (InterruptedException e) {
+      explainer.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    logger.removeHandler(handler);
+    handler.close();
+  }
+
+  private static class EntryFormatter extends Formatter {
+    @Override
+    public String format(LogRecord record) {
+      return Instant.ofEpochMilli(record.getMillis()) + " " + record.getMessage() +
+              System.lineSeparator() + System.lineSeparator();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of a {@link SlowQueryLog}.
+ */
+public class SlowQueryLogConfig {
+
+  @Getter private long thresholdNanos;
+  @Getter private String logFile;
+  @Getter private int maxFileSize;
+  @Getter private int fileCount;
+  @Getter private double maxEntriesPerSecond;
+  @Getter private boolean explain;
+  @Getter private int maxPendingExplains;
+
+  public SlowQueryLogConfig() {
+    thresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    logFile = "logs/flatdb-slow-queries.%g.log";
+    maxFileSize = 10 * 1024 * 1024;
+    fileCount = 5;
+    maxEntriesPerSecond = 10;
+    explain = true;
+    maxPendingExplains = 16;
+  }
+
+  /**
+   * Statements that take at least this long are logged.
+   */
+  public SlowQueryLogConfig setThreshold(long threshold, TimeUnit unit) {
+    this.thresholdNanos = Math.max(0, unit.toNanos(threshold));
+    return this;
+  }
+
+  /**
+   * The log file, as a {@link java.util.logging.FileHandler} pattern. '%g' is replaced with the
+   * generation number of a rotated file.
+   */
+  public SlowQueryLogConfig setLogFile(String logFile) {
+    this.logFile = logFile;
+    return this;
+  }
+
+  /**
+   * Rotate the log after it grew to maxFileSize bytes, keeping at most fileCount files.
+   */
+  public SlowQueryLogConfig setRotation(int maxFileSize, int fileCount) {
+    if (maxFileSize < 1 || fileCount < 1)
+      throw new IllegalArgumentException("The slow query log needs at least one file of at least one byte!");
+    this.maxFileSize = maxFileSize;
+    this.fileCount = fileCount;
+    return this;
+  }
+
+  /**
+   * Log at most this many slow statements per second. Statements over the limit are only counted.
+   */
+  public SlowQueryLogConfig setMaxEntriesPerSecond(double maxEntriesPerSecond) {
+    if (maxEntriesPerSecond <= 0)
+      throw new IllegalArgumentException("The slow query log must allow some entries per second!");
+    this.maxEntriesPerSecond = maxEntriesPerSecond;
+    return this;
+  }
+
+  /**
+   * Whether the plan of a slow statement is captured with EXPLAIN, and how many EXPLAINs may wait
+   * to run before further slow statements are logged without a plan.
+   */
+  public SlowQueryLogConfig setExplain(boolean explain, int maxPendingExplains) {
+    this.explain = explain;
+    this.maxPendingExplains = Math.max(1, maxPendingExplains);
+    return this;
+  }
+}
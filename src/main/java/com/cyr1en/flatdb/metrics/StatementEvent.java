@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import lombok.Getter;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement that FlatDB is about to execute or has executed.
+ */
+public class StatementEvent {
+
+  /**
+   * The SQL state of statements that were cancelled through a {@link com.cyr1en.flatdb.QueryHandle}.
+   */
+  public static final String CANCELLED_STATE = "HY008";
+  /**
+   * The SQL state that H2 reports for statements that ran out of time.
+   */
+  private static final String TIMED_OUT_STATE = "57014";
+
+  @Getter private final String sql;
+  /**
+   * The whitespace-normalized SQL with its literals replaced by '?'.
+   */
+  @Getter private final String fingerprint;
+  /**
+   * Lowercase names of the tables the statement touches, recognized by the database prefix.
+   */
+  @Getter private final Set<String> tables;
+  @Getter private final StatementKind kind;
+  private final Object[] params;
+  private final long durationNanos;
+  /**
+   * Rows that were read or affected, or -1 if unknown.
+   */
+  @Getter private final long rowCount;
+  private final SQLException error;
+
+  public StatementEvent(String sql, String fingerprint, Set<String> tables, StatementKind kind) {
+    this(sql, fingerprint, tables, kind, new Object[0], -1, -1, null);
+  }
+
+  private StatementEvent(String sql, String fingerprint, Set<String> tables, StatementKind kind, Object[] params,
+                         long durationNanos, long rowCount, SQLException error) {
+    this.sql = sql;
+    this.fingerprint = fingerprint;
+    this.tables = tables;
+    this.kind = kind;
+    this.params = params;
+    this.durationNanos = durationNanos;
+    this.rowCount = rowCount;
+    this.error = error;
+  }
+
+  /**
+   * @return a copy of this event with the values that were bound to the statement's '?' parameters.
+   */
+  public StatementEvent withParams(Object... params) {
+    return new StatementEvent(sql, fingerprint, tables, kind, params.clone(), durationNanos, rowCount, error);
+  }
+
+  /**
+   * @return a copy of this event that records how the statement completed.
+   */
+  public StatementEvent completed(long durationNanos, long rowCount, SQLException error) {
+    return new StatementEvent(sql, fingerprint, tables, kind, params, durationNanos, rowCount, error);
+  }
+
+  /**
+   * @return the values that were bound to the statement's '?' parameters, in order.
+   */
+  public List<Object> getParams() {
+    return Collections.unmodifiableList(Arrays.asList(params));
+  }
+
+  /**
+   * @return how long the statement took, or -1 before it was executed.
+   */
+  public long getDuration(TimeUnit unit) {
+    return durationNanos < 0 ? -1 : unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public Optional<SQLException> getError() {
+    return Optional.ofNullable(error);
+  }
+
+  public boolean isFailed() {
+    return error != null;
+  }
+
+  /**
+   * @return true if the statement was stopped by {@link com.cyr1en.flatdb.QueryHandle#cancel()}.
+   */
+  public boolean isCancelled() {
+    return error != null && CANCELLED_STATE.equals(error.getSQLState());
+  }
+
+  /**
+   * @return true if the statement ran longer than its query timeout.
+   */
+  public boolean isTimedOut() {
+    return error != null && !isCancelled() &&
+            (error instanceof SQLTimeoutException || TIMED_OUT_STATE.equals(error.getSQLState()));
+  }
+
+  @Override
+  public String toString() {
+    return "StatementEvent{kind=" + kind + ", fingerprint='" + fingerprint + "', durationNanos=" + durationNanos +
+            ", rows=" + rowCount + (error == null ? "" : ", error=" + error.getMessage()) + "}";
+  }
+}
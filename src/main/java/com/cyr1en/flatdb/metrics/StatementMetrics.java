@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default {@link DatabaseListener}, which keeps a {@link LatencyHistogram} per statement
+ * fingerprint and per table.
+ *
+ * <p>To bound its memory, at most {@code maxStatements} fingerprints are tracked; statements
+ * with a fingerprint beyond that are grouped under {@link #OTHER}.</p>
+ */
+public class StatementMetrics implements DatabaseListener {
+
+  public static final String OTHER = "<other>";
+
+  private final int maxStatements;
+  private final ConcurrentHashMap<String, StatementStats> statements;
+  private final ConcurrentHashMap<String, StatementStats> tables;
+
+  public StatementMetrics() {
+    this(1000);
+  }
+
+  public StatementMetrics(int maxStatements) {
+    this.maxStatements = maxStatements;
+    this.statements = new ConcurrentHashMap<>();
+    this.tables = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public void afterStatement(StatementEvent event) {
+    String fingerprint = event.getFingerprint();
+    if (!statements.containsKey(fingerprint) && statements.size() >= maxStatements)
+      fingerprint = OTHER;
+    statements.computeIfAbsent(fingerprint, StatementStats::new).record(event);
+    for (String table : event.getTables())
+      tables.computeIfAbsent(table, StatementStats::new).record(event);
+  }
+
+  /**
+   * @return the stats of every statement fingerprint.
+   */
+  public Map<String, StatementStats> getStatements() {
+    return Collections.unmodifiableMap(statements);
+  }
+
+  /**
+   * @return the stats of every table, by lowercase table name.
+   */
+  public Map<String, StatementStats> getTables() {
+    return Collections.unmodifiableMap(tables);
+  }
+
+  public Optional<StatementStats> getStatement(String fingerprint) {
+    return Optional.ofNullable(statements.get(fingerprint));
+  }
+
+  public Optional<StatementStats> getTable(String tableName) {
+    return Optional.ofNullable(tables.get(tableName.toLowerCase()));
+  }
+
+  public void reset() {
+    statements.clear();
+    tables.clear();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executions, errors, rows and latencies of one group of statements.
+ */
+public class StatementStats {
+
+  /**
+   * The statement fingerprint or the table name this group is keyed by.
+   */
+  @Getter private final String key;
+  @Getter private final LatencyHistogram latency;
+  private final LongAdder errors;
+  private final LongAdder rows;
+  private final LongAdder timeouts;
+  private final LongAdder cancellations;
+
+  StatementStats(String key) {
+    this.key = key;
+    this.latency = new LatencyHistogram();
+    this.errors = new LongAdder();
+    this.rows = new LongAdder();
+    this.timeouts = new LongAdder();
+    this.cancellations = new LongAdder();
+  }
+
+  void record(StatementEvent event) {
+    latency.record(event.getDurationNanos());
+    if (event.isFailed()) errors.increment();
+    if (event.isTimedOut()) timeouts.increment();
+    if (event.isCancelled()) cancellations.increment();
+    if (event.getRowCount() > 0) rows.add(event.getRowCount());
+  }
+
+  public long getExecutions() {
+    return latency.getCount();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  /**
+   * @return how many statements ran longer than their query timeout. These are also errors.
+   */
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  /**
+   * @return how many statements were cancelled. These are also errors.
+   */
+  public long getCancellations() {
+    return cancellations.sum();
+  }
+
+  /**
+   * @return how many rows the statements read or affected, where that was known.
+   */
+  public long getRows() {
+    return rows.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "StatementStats{key='" + key + "', errors=" + getErrors() + ", timeouts=" + getTimeouts() +
+            ", cancellations=" + getCancellations() + ", rows=" + getRows() + ", " + latency + "}";
+  }
+}
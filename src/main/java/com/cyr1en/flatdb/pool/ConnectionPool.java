@@ -0,0 +1,194 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.pool;
+
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of JDBC connections to a single database URL.
+ *
+ * <p>At most {@link PoolConfig#getMaxSize()} connections can be leased at the same time.
+ * A lease that finds the pool exhausted waits up to {@link PoolConfig#getAcquireTimeoutMillis()}
+ * before giving up with a {@link SQLTimeoutException}. Idle connections are kept in LIFO
+ * order so the same few connections stay warm, while the ones at the tail get evicted
+ * once they were idle for longer than {@link PoolConfig#getIdleTimeoutMillis()}.</p>
+ */
+public class ConnectionPool implements AutoCloseable {
+
+  private final String url;
+  @Getter private final PoolConfig config;
+  @Getter private final PoolMetrics metrics;
+
+  private final Semaphore permits;
+  private final LinkedBlockingDeque<PooledConnection> idle;
+  private final ScheduledExecutorService evictor;
+  private volatile boolean closed;
+
+  public ConnectionPool(String url, PoolConfig config) throws SQLException {
+    this.url = url;
+    this.config = config;
+    this.metrics = new PoolMetrics();
+    this.permits = new Semaphore(config.getMaxSize(), true);
+    this.idle = new LinkedBlockingDeque<>();
+    try {
+      for (int i = 0; i < config.getMinSize(); i++)
+        idle.offerLast(open());
+    } catch (SQLException e) {
+      idle.forEach(this::destroy);
+      throw e;
+    }
+    this.evictor = config.getIdleTimeoutMillis() > 0 ? startEvictor() : null;
+  }
+
+  /**
+   * Lease a connection from the pool.
+   *
+   * <p>The returned connection must be closed to give it back to the pool, preferably
+   * with a try-with-resources block.</p>
+   *
+   * @return a leased {@link Connection}.
+   * @throws SQLTimeoutException if no connection became available within the acquire timeout.
+   */
+  public Connection getConnection() throws SQLException {
+    if (closed) throw new SQLException("The connection pool has been closed.");
+    long start = System.nanoTime();
+    acquirePermit();
+    try {
+      PooledConnection pooled;
+      while ((pooled = idle.pollFirst()) != null) {
+        if (isValid(pooled)) break;
+        destroy(pooled);
+      }
+      if (pooled == null) pooled = open();
+      metrics.recordLease(System.nanoTime() - start);
+      return pooled.lease();
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  private void acquirePermit() throws SQLException {
+    if (permits.tryAcquire()) return;
+    metrics.recordExhausted();
+    try {
+      if (permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) return;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+    }
+    metrics.recordTimeout();
+    throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis() +
+            "ms waiting for a pooled connection. (max pool size: " + config.getMaxSize() + ")");
+  }
+
+  void release(PooledConnection pooled) {
+    metrics.recordRelease();
+    if (!closed && pooled.reset())
+      idle.offerFirst(pooled);
+    else
+      destroy(pooled);
+    permits.release();
+  }
+
+  private PooledConnection open() throws SQLException {
+    Connection connection = DriverManager.getConnection(url);
+    try {
+      if (config.isReadOnly()) connection.setReadOnly(true);
+    } catch (SQLException e) {
+      connection.close();
+      throw e;
+    }
+    metrics.openConnections().incrementAndGet();
+    return new PooledConnection(this, connection);
+  }
+
+  private void destroy(PooledConnection pooled) {
+    metrics.openConnections().decrementAndGet();
+    pooled.closePhysical();
+  }
+
+  private boolean isValid(PooledConnection pooled) {
+    try {
+      if (pooled.getPhysical().isClosed()) return false;
+      if (!config.hasValidationQuery()) return true;
+      try (Statement statement = pooled.getPhysical().createStatement()) {
+        statement.execute(config.getValidationQuery());
+      }
+      return true;
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private ScheduledExecutorService startEvictor() {
+    ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "FlatDB-Pool-Evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1000, config.getIdleTimeoutMillis() / 2);
+    service.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    return service;
+  }
+
+  private void evictIdle() {
+    long cutoff = System.currentTimeMillis() - config.getIdleTimeoutMillis();
+    while (idle.size() > config.getMinSize()) {
+      PooledConnection oldest = idle.peekLast();
+      if (oldest == null || oldest.getLastReleased() > cutoff) return;
+      if (idle.removeLastOccurrence(oldest))
+        destroy(oldest);
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Closes every idle connection. Connections that are still leased get closed
+   * as soon as they are returned.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    if (evictor != null) evictor.shutdownNow();
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null)
+      destroy(pooled);
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.pool;
+
+import com.cyr1en.flatdb.util.FastStrings;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings that a {@link ConnectionPool} is created with.
+ *
+ * <p>Sizes are validated when they are set, so a {@link ConnectionPool} can always
+ * trust the values it reads from here.</p>
+ */
+public class PoolConfig {
+
+  @Getter private int minSize;
+  @Getter private int maxSize;
+  @Getter private long acquireTimeoutMillis;
+  @Getter private long idleTimeoutMillis;
+  @Getter private String validationQuery;
+  @Getter private int statementCacheSize;
+  @Getter private boolean readOnly;
+  @Getter private int queryTimeoutSeconds;
+
+  public PoolConfig() {
+    minSize = 1;
+    maxSize = 10;
+    acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    idleTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    validationQuery = "";
+    statementCacheSize = 64;
+    readOnly = false;
+    queryTimeoutSeconds = 0;
+  }
+
+  public PoolConfig setMinSize(int minSize) {
+    if (minSize < 0)
+      throw new IllegalArgumentException("The minimum pool size cannot be negative!");
+    this.minSize = minSize;
+    if (maxSize < minSize) maxSize = minSize;
+    return this;
+  }
+
+  public PoolConfig setMaxSize(int maxSize) {
+    if (maxSize < 1)
+      throw new IllegalArgumentException("The maximum pool size must be at least 1!");
+    this.maxSize = maxSize;
+    if (minSize > maxSize) minSize = maxSize;
+    return this;
+  }
+
+  public PoolConfig setAcquireTimeout(long timeout, TimeUnit unit) {
+    this.acquireTimeoutMillis = Math.max(0, unit.toMillis(timeout));
+    return this;
+  }
+
+  /**
+   * How long a connection above the minimum pool size may sit idle before it gets closed.
+   *
+   * <p>A timeout of 0 disables idle eviction.</p>
+   */
+  public PoolConfig setIdleTimeout(long timeout, TimeUnit unit) {
+    this.idleTimeoutMillis = Math.max(0, unit.toMillis(timeout));
+    return this;
+  }
+
+  /**
+   * Query that is executed on a connection before it gets leased.
+   *
+   * <p>If the query is blank, the connection is only checked for being closed.</p>
+   */
+  public PoolConfig setValidationQuery(String validationQuery) {
+    this.validationQuery = validationQuery == null ? "" : validationQuery;
+    return this;
+  }
+
+  /**
+   * How many {@link java.sql.PreparedStatement}s each pooled connection keeps prepared.
+   *
+   * <p>A size of 0 disables the statement cache.</p>
+   */
+  public PoolConfig setStatementCacheSize(int statementCacheSize) {
+    this.statementCacheSize = Math.max(0, statementCacheSize);
+    return this;
+  }
+
+  /**
+   * Open every connection of the pool as read-only, and put it back into read-only mode
+   * when it is returned. Drivers treat this as a hint they may or may not enforce.
+   */
+  public PoolConfig setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+    return this;
+  }
+
+  /**
+   * Set the {@link java.sql.Statement#setQueryTimeout(int)} of every statement that is created
+   * on a pooled connection. JDBC timeouts are in seconds, so the timeout is rounded up to a
+   * whole second. A timeout of 0 lets statements run as long as they take.
+   */
+  public PoolConfig setQueryTimeout(long timeout, TimeUnit unit) {
+    long millis = Math.max(0, unit.toMillis(timeout));
+    this.queryTimeoutSeconds = (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+    return this;
+  }
+
+  public boolean hasValidationQuery() {
+    return !FastStrings.isBlank(validationQuery);
+  }
+}
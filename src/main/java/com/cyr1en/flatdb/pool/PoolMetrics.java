@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters of a {@link ConnectionPool}.
+ *
+ * <p>All values are read without locking, so a snapshot taken while the pool is
+ * busy may be slightly inconsistent between two getters.</p>
+ */
+public class PoolMetrics {
+
+  private final LongAdder leaseCount;
+  private final LongAdder waitNanos;
+  private final AtomicLong maxWaitNanos;
+  private final LongAdder exhaustedCount;
+  private final LongAdder timeoutCount;
+  private final AtomicInteger activeLeases;
+  private final AtomicInteger openConnections;
+  private final LongAdder statementHits;
+  private final LongAdder statementMisses;
+
+  PoolMetrics() {
+    leaseCount = new LongAdder();
+    waitNanos = new LongAdder();
+    maxWaitNanos = new AtomicLong();
+    exhaustedCount = new LongAdder();
+    timeoutCount = new LongAdder();
+    activeLeases = new AtomicInteger();
+    openConnections = new AtomicInteger();
+    statementHits = new LongAdder();
+    statementMisses = new LongAdder();
+  }
+
+  void recordLease(long waited) {
+    leaseCount.increment();
+    waitNanos.add(waited);
+    activeLeases.incrementAndGet();
+    long max;
+    while (waited > (max = maxWaitNanos.get()))
+      if (maxWaitNanos.compareAndSet(max, waited)) break;
+  }
+
+  void recordRelease() {
+    activeLeases.decrementAndGet();
+  }
+
+  void recordExhausted() {
+    exhaustedCount.increment();
+  }
+
+  void recordTimeout() {
+    timeoutCount.increment();
+  }
+
+  void recordStatementHit() {
+    statementHits.increment();
+  }
+
+  void recordStatementMiss() {
+    statementMisses.increment();
+  }
+
+  AtomicInteger openConnections() {
+    return openConnections;
+  }
+
+  /**
+   * @return how many connections were leased from the pool so far.
+   */
+  public long getLeaseCount() {
+    return leaseCount.sum();
+  }
+
+  public long getTotalWaitTime(TimeUnit unit) {
+    return unit.convert(waitNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  public long getMaxWaitTime(TimeUnit unit) {
+    return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  public double getAverageWaitTime(TimeUnit unit) {
+    long leases = leaseCount.sum();
+    if (leases == 0) return 0;
+    return (double) waitNanos.sum() / leases / unit.toNanos(1);
+  }
+
+  /**
+   * @return how many times a lease found no free connection and had to wait for one.
+   */
+  public long getExhaustedCount() {
+    return exhaustedCount.sum();
+  }
+
+  /**
+   * @return how many times a lease gave up after waiting for the acquire timeout.
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.sum();
+  }
+
+  public int getActiveLeases() {
+    return activeLeases.get();
+  }
+
+  public int getOpenConnections() {
+    return openConnections.get();
+  }
+
+  /**
+   * @return how many prepared statements were served from a connection's statement cache.
+   */
+  public long getStatementCacheHits() {
+    return statementHits.sum();
+  }
+
+  /**
+   * @return how many prepared statements had to be parsed because they weren't cached.
+   */
+  public long getStatementCacheMisses() {
+    return statementMisses.sum();
+  }
+
+  public double getStatementCacheHitRatio() {
+    long hits = statementHits.sum();
+    long total = hits + statementMisses.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolMetrics{leases=" + getLeaseCount() +
+            ", active=" + getActiveLeases() +
+            ", open=" + getOpenConnections() +
+            ", avgWaitMs=" + getAverageWaitTime(TimeUnit.MILLISECONDS) +
+            ", maxWaitMs=" + getMaxWaitTime(TimeUnit.MILLISECONDS) +
+            ", exhausted=" + getExhaustedCount() +
+            ", timeouts=" + getTimeoutCount() +
+            ", statementHitRatio=" + getStatementCacheHitRatio() + "}";
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A physical {@link Connection} that is owned by a {@link ConnectionPool}.
+ *
+ * <p>Callers never see this class. Every lease hands out a fresh {@link Proxy} of
+ * {@link Connection} whose {@link Connection#close()} returns the physical connection
+ * to the pool instead of closing it. A proxy stops working once it has been closed,
+ * so a stale reference can't touch a connection that was already leased to someone else.</p>
+ *
+ * <p>{@link Connection#prepareStatement(String)} is served from a {@link StatementCache}
+ * that lives as long as the physical connection.</p>
+ */
+class PooledConnection {
+
+  private final ConnectionPool pool;
+  private final Connection physical;
+  private final StatementCache statementCache;
+  private volatile long lastReleased;
+
+  PooledConnection(ConnectionPool pool, Connection physical) {
+    this.pool = pool;
+    this.physical = physical;
+    this.statementCache = new StatementCache(physical, pool.getConfig().getStatementCacheSize(),
+            pool.getConfig().getQueryTimeoutSeconds(), pool.getMetrics());
+    this.lastReleased = System.currentTimeMillis();
+  }
+
+  Connection getPhysical() {
+    return physical;
+  }
+
+  long getLastReleased() {
+    return lastReleased;
+  }
+
+  Connection lease() {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class}, new Lease());
+  }
+
+  /**
+   * Puts the physical connection back into the state a fresh lease expects.
+   *
+   * @return false if the connection is broken and should be discarded.
+   */
+  boolean reset() {
+    try {
+      if (physical.isClosed()) return false;
+      if (!physical.getAutoCommit()) {
+        physical.rollback();
+        physical.setAutoCommit(true);
+      }
+      boolean readOnly = pool.getConfig().isReadOnly();
+      if (physical.isReadOnly() != readOnly) physical.setReadOnly(readOnly);
+      physical.clearWarnings();
+      lastReleased = System.currentTimeMillis();
+      return true;
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  void closePhysical() {
+    try {
+      physical.close();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private class Lease implements InvocationHandler {
+
+    private volatile boolean released;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          synchronized (this) {
+            if (released) return null;
+            released = true;
+          }
+          pool.release(PooledConnection.this);
+          return null;
+        case "isClosed":
+          return released || physical.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled" + physical.toString();
+        default:
+          if (released)
+            throw new SQLException("This connection has already been returned to the pool.");
+          if (method.getName().equals("prepareStatement") && args.length == 1)
+            return statementCache.prepare((String) args[0]);
+          Object result;
+          try {
+            result = method.invoke(physical, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+          int timeout = pool.getConfig().getQueryTimeoutSeconds();
+          if (timeout > 0 && result instanceof Statement)
+            ((Statement) result).setQueryTimeout(timeout);
+          return result;
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of {@link PreparedStatement}s for one physical connection.
+ *
+ * <p>A cached statement is handed out as a {@link Proxy} whose {@link PreparedStatement#close()}
+ * only clears the parameters and puts the statement back into the cache. If the same SQL is
+ * prepared again while its cached statement is still checked out, the caller gets a plain,
+ * uncached statement so the two never share state.</p>
+ *
+ * <p>This class is not thread-safe; a connection is only ever used by one lease at a time.</p>
+ */
+class StatementCache {
+
+  private final Connection physical;
+  private final int capacity;
+  private final int queryTimeout;
+  private final PoolMetrics metrics;
+  private final LinkedHashMap<String, CachedStatement> statements;
+
+  StatementCache(Connection physical, int capacity, int queryTimeout, PoolMetrics metrics) {
+    this.physical = physical;
+    this.capacity = capacity;
+    this.queryTimeout = queryTimeout;
+    this.metrics = metrics;
+    this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+        if (size() <= StatementCache.this.capacity) return false;
+        eldest.getValue().evict();
+        return true;
+      }
+    };
+  }
+
+  PreparedStatement prepare(String sql) throws SQLException {
+    if (capacity <= 0) return create(sql);
+    CachedStatement entry = statements.get(sql);
+    if (entry != null && !entry.inUse) {
+      metrics.recordStatementHit();
+      return entry.checkout();
+    }
+    metrics.recordStatementMiss();
+    PreparedStatement statement = create(sql);
+    if (entry != null) return statement;
+    try {
+      entry = new CachedStatement(statement);
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+    statements.put(sql, entry);
+    return entry.checkout();
+  }
+
+  private PreparedStatement create(String sql) throws SQLException {
+    PreparedStatement statement = physical.prepareStatement(sql);
+    try {
+      if (queryTimeout > 0) statement.setQueryTimeout(queryTimeout);
+    } catch (SQLException e) {
+      statement.close();
+      throw e;
+    }
+    return statement;
+  }
+
+  private static class CachedStatement {
+
+    private final PreparedStatement statement;
+    private final int fetchSize;
+    private final int maxRows;
+    private boolean inUse;
+    private boolean evicted;
+
+    private CachedStatement(PreparedStatement statement) throws SQLException {
+      this.statement = statement;
+      this.fetchSize = statement.getFetchSize();
+      this.maxRows = statement.getMaxRows();
+    }
+
+    private PreparedStatement checkout() {
+      inUse = true;
+      return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+              new Class<?>[]{PreparedStatement.class}, new Checkout());
+    }
+
+    private void evict() {
+      evicted = true;
+      if (!inUse) closeQuietly();
+    }
+
+    private void checkin() throws SQLException {
+      inUse = false;
+      if (evicted) {
+        closeQuietly();
+        return;
+      }
+      ResultSet resultSet = statement.getResultSet();
+      if (resultSet != null) resultSet.close();
+      statement.clearParameters();
+      statement.clearBatch();
+      // H2 rejects a fetch size above the max rows, so the max rows go back first.
+      if (statement.getMaxRows() != maxRows) statement.setMaxRows(maxRows);
+      if (statement.getFetchSize() != fetchSize) statement.setFetchSize(fetchSize);
+    }
+
+    private void closeQuietly() {
+      try {
+        statement.close();
+      } catch (SQLException ignored) {
+      }
+    }
+
+    private class Checkout implements InvocationHandler {
+
+      private boolean returned;
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+          case "close":
+            if (returned) return null;
+            returned = true;
+            checkin();
+            return null;
+          case "isClosed":
+            return returned || statement.isClosed();
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          default:
+            if (returned)
+              throw new SQLException("This statement has already been closed.");
+            try {
+              return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+        }
+      }
+    }
+  }
+}
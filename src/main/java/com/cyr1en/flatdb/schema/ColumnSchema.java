@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.schema;
+
+import lombok.Getter;
+
+import java.lang.reflect.Field;
+
+/**
+ * Describes one {@link com.cyr1en.flatdb.annotations.Column} of a {@link TableSchema}.
+ */
+public class ColumnSchema {
+
+  @Getter private final String name;
+  @Getter private final Field field;
+  @Getter private final Class<?> javaType;
+  @Getter private final String defaultValue;
+  @Getter private final boolean primaryKey;
+  @Getter private final boolean autoIncrement;
+
+  public ColumnSchema(String name, Field field, String defaultValue, boolean primaryKey, boolean autoIncrement) {
+    this(name, field, field.getType(), defaultValue, primaryKey, autoIncrement);
+  }
+
+  /**
+   * Create a column that isn't backed by a {@link Field}.
+   *
+   * <p>This is used by classes generated by FlatDB's annotation processor, which
+   * access their columns without reflection.</p>
+   */
+  public ColumnSchema(String name, Class<?> javaType, String defaultValue, boolean primaryKey, boolean autoIncrement) {
+    this(name, null, javaType, defaultValue, primaryKey, autoIncrement);
+  }
+
+  private ColumnSchema(String name, Field field, Class<?> javaType, String defaultValue,
+                       boolean primaryKey, boolean autoIncrement) {
+    this.name = name;
+    this.field = field;
+    this.javaType = javaType;
+    this.defaultValue = defaultValue;
+    this.primaryKey = primaryKey;
+    this.autoIncrement = autoIncrement;
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + javaType.getSimpleName();
+  }
+}
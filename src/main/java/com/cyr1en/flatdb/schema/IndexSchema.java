@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.schema;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Describes one {@link com.cyr1en.flatdb.annotations.Index} of a {@link TableSchema}.
+ */
+public class IndexSchema {
+
+  @Getter private final String name;
+  @Getter private final ImmutableList<String> columns;
+  @Getter private final boolean unique;
+
+  public IndexSchema(String name, List<String> columns, boolean unique) {
+    this.name = name;
+    this.columns = ImmutableList.copyOf(columns);
+    this.unique = unique;
+  }
+
+  @Override
+  public String toString() {
+    return (unique ? "unique " : "") + name + columns;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.schema;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Describes a table that was declared with {@link com.cyr1en.flatdb.annotations.Table}.
+ *
+ * <p>The schema is built once by the {@link com.cyr1en.flatdb.TableProcessor} and shared
+ * by everything that needs to know about the table's columns afterwards.</p>
+ *
+ * @param <T> the class the table was declared with.
+ */
+public class TableSchema<T> {
+
+  @Getter private final String tableName;
+  @Getter private final Class<T> type;
+  @Getter private final ImmutableList<ColumnSchema> columns;
+  @Getter private final ImmutableList<IndexSchema> indexes;
+
+  public TableSchema(String tableName, Class<T> type, List<ColumnSchema> columns) {
+    this(tableName, type, columns, ImmutableList.of());
+  }
+
+  public TableSchema(String tableName, Class<T> type, List<ColumnSchema> columns, List<IndexSchema> indexes) {
+    this.tableName = tableName;
+    this.type = type;
+    this.columns = ImmutableList.copyOf(columns);
+    this.indexes = ImmutableList.copyOf(indexes);
+  }
+
+  /**
+   * Only the first column that is marked as a primary key becomes the
+   * primary key of the table. See {@link com.cyr1en.flatdb.annotations.Column#primaryKey()}.
+   *
+   * @return the primary key column of this table, if there is one.
+   */
+  public Optional<ColumnSchema> getPrimaryKey() {
+    return columns.stream().filter(ColumnSchema::isPrimaryKey).findFirst();
+  }
+
+  /**
+   * @return every column that a value has to be supplied for in an INSERT.
+   */
+  public List<ColumnSchema> getInsertableColumns() {
+    return columns.stream().filter(c -> !c.isAutoIncrement()).collect(Collectors.toList());
+  }
+
+  @Override
+  public String toString() {
+    return tableName + columns;
+  }
+}
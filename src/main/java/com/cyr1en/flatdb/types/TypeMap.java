@@ -31,14 +31,24 @@ import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Maps java types to SQL types.
+ *
+ * <p>Every {@link com.cyr1en.flatdb.Database} has its own TypeMap whose custom types fall back to
+ * the {@link #global()} map, which the static methods of this class work on. Lookups are cached
+ * per class in a {@link ClassValue}, so they don't lock or allocate once a class has been seen.
+ * Registering or removing a custom type replaces the cache; maps that fall back to a changed
+ * parent notice it through the parent's version and rebuild theirs on the next lookup.</p>
+ */
 public class TypeMap {
 
   private static final Map<Class<?>, SQLTypePair> TYPE_MAP;
-  private static final Map<Class<?>, SQLTypePair> CUSTOM_TYPE_MAP;
   public static final Map<Integer, String> TYPE_TO_NAME;
+  private static final TypeMap GLOBAL;
 
   static {
     TYPE_TO_NAME = extractTypeNames();
@@ -51,28 +61,109 @@ public class TypeMap {
             .put(Float.class, SQLTypePair.of(Types.REAL, "0.0"))
             .put(Double.class, SQLTypePair.of(Types.FLOAT, "0.0"))
             .build();
-    CUSTOM_TYPE_MAP = new HashMap<>();
+    GLOBAL = new TypeMap(null);
+  }
+
+  private final TypeMap parent;
+  private volatile Map<Class<?>, SQLTypePair> customTypes;
+  private volatile long modCount;
+  private volatile Lookups lookups;
+
+  /**
+   * @param parent the map to fall back to for types without a custom mapping in this one, or
+   *               null to fall back to the built-in types only.
+   */
+  public TypeMap(TypeMap parent) {
+    this.parent = parent;
+    this.customTypes = ImmutableMap.of();
+    this.lookups = new Lookups(parentVersion());
+  }
+
+  /**
+   * @return the map that the static methods of this class register custom types in.
+   */
+  public static TypeMap global() {
+    return GLOBAL;
+  }
+
+  /**
+   * @return the SQL type of a java type, or null if neither this map, its parents nor the
+   * built-in types map it.
+   */
+  public SQLTypePair resolve(Class<?> javaClass) {
+    return lookups().get(javaClass).type;
+  }
+
+  /**
+   * @return whether a java type is mapped by a custom type of this map or one of its parents.
+   */
+  public boolean isCustom(Class<?> javaClass) {
+    return lookups().get(javaClass).custom;
+  }
+
+  public void register(Class<?> javaClass, SQLTypePair sqlTypePair, boolean override) {
+    Map<Class<?>, SQLTypePair> types = new HashMap<>();
+    types.put(javaClass, sqlTypePair);
+    register(types, override);
+  }
+
+  public synchronized void register(Map<Class<?>, SQLTypePair> types, boolean override) {
+    Map<Class<?>, SQLTypePair> updated = new HashMap<>(customTypes);
+    for (Map.Entry<Class<?>, SQLTypePair> entry : types.entrySet()) {
+      Class<?> key = Primitives.wrap(entry.getKey());
+      if (override) updated.put(key, entry.getValue());
+      else updated.putIfAbsent(key, entry.getValue());
+    }
+    update(updated);
+  }
+
+  public synchronized void unregister(Iterable<Class<?>> javaClasses) {
+    Map<Class<?>, SQLTypePair> updated = new HashMap<>(customTypes);
+    for (Class<?> javaClass : javaClasses)
+      updated.remove(Primitives.wrap(javaClass));
+    update(updated);
+  }
+
+  private void update(Map<Class<?>, SQLTypePair> updated) {
+    customTypes = ImmutableMap.copyOf(updated);
+    lookups = new Lookups(parentVersion());
+    modCount++;
+  }
+
+  /**
+   * @return a stamp that changes whenever this map or one of its parents changes.
+   */
+  private long version() {
+    return parent == null ? modCount : modCount + parent.version();
+  }
+
+  private long parentVersion() {
+    return parent == null ? 0 : parent.version();
+  }
+
+  private Lookups lookups() {
+    Lookups current = lookups;
+    if (parent != null && current.parentVersion != parent.version()) {
+      current = new Lookups(parentVersion());
+      lookups = current;
+    }
+    return current;
   }
 
   public static SQLTypePair getSQLType(Class<?> jClass) {
-    Class<?> checkedClass = jClass.isPrimitive() ? Primitives.wrap(jClass) : jClass;
-    if(CUSTOM_TYPE_MAP.containsKey(checkedClass))
-      return CUSTOM_TYPE_MAP.get(checkedClass);
-    return TYPE_MAP.get(checkedClass);
+    return GLOBAL.resolve(jClass);
+  }
+
+  public static boolean isCustomType(Class<?> jClass) {
+    return GLOBAL.isCustom(jClass);
   }
 
   public static void addCustomType(Map<Class<?>, SQLTypePair> customTypes, boolean override) {
-    for(Map.Entry<Class<?>, SQLTypePair> entry : customTypes.entrySet())
-      addCustomType(entry.getKey(), entry.getValue(), override);
+    GLOBAL.register(customTypes, override);
   }
 
   public static void addCustomType(Class<?> javaClass, SQLTypePair sqlTypePair, boolean override) {
-    boolean exists = CUSTOM_TYPE_MAP.containsKey(javaClass);
-    if(!exists)
-      CUSTOM_TYPE_MAP.put(javaClass, sqlTypePair);
-    else if(override) {
-      CUSTOM_TYPE_MAP.replace(javaClass, sqlTypePair);
-    }
+    GLOBAL.register(javaClass, sqlTypePair, override);
   }
 
   public static void addCustomType(Map<Class<?>, SQLTypePair> customTypes) {
@@ -84,12 +175,11 @@ public class TypeMap {
   }
 
   public static void removeCustomType(Map<Class<?>, SQLTypePair> typeMap) {
-    for(Map.Entry<Class<?>, SQLTypePair> entry : typeMap.entrySet())
-      CUSTOM_TYPE_MAP.remove(entry.getKey());
+    GLOBAL.unregister(typeMap.keySet());
   }
 
   public static void removeCustomType(Class<?> javaClass) {
-    CUSTOM_TYPE_MAP.remove(javaClass);
+    GLOBAL.unregister(Collections.singleton(javaClass));
   }
 
   public static String getName(int type) {
@@ -109,4 +199,33 @@ public class TypeMap {
     });
     return builder.build();
   }
+
+  private static class Lookup {
+
+    private final SQLTypePair type;
+    private final boolean custom;
+
+    private Lookup(SQLTypePair type, boolean custom) {
+      this.type = type;
+      this.custom = custom;
+    }
+  }
+
+  private class Lookups extends ClassValue<Lookup> {
+
+    private final long parentVersion;
+
+    private Lookups(long parentVersion) {
+      this.parentVersion = parentVersion;
+    }
+
+    @Override
+    protected Lookup computeValue(Class<?> type) {
+      Class<?> checkedClass = Primitives.wrap(type);
+      SQLTypePair custom = customTypes.get(checkedClass);
+      if (custom != null) return new Lookup(custom, true);
+      if (parent != null) return parent.lookups().get(checkedClass);
+      return new Lookup(TYPE_MAP.get(checkedClass), false);
+    }
+  }
 }
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of comma separated values as written by {@link CsvWriter} and H2's CSVWRITE.
+ *
+ * <p>Fields may be enclosed in double quotes, which allows commas, line breaks and doubled quotes
+ * inside of them. An empty field that isn't quoted is read as null. Only the record that is being
+ * read is kept in memory.</p>
+ */
+public class CsvReader implements Closeable {
+
+  private final Reader in;
+  private final StringBuilder field;
+  private int peeked;
+
+  public CsvReader(Reader in) {
+    this.in = in;
+    this.field = new StringBuilder();
+    this.peeked = -2;
+  }
+
+  /**
+   * @return the fields of the next record, or null at the end of the input.
+   */
+  public List<String> next() throws IOException {
+    int c = read();
+    while (c == '\r' || c == '\n') c = read();
+    if (c == -1) return null;
+    List<String> record = new ArrayList<>();
+    while (true) {
+      field.setLength(0);
+      boolean quoted = false;
+      if (c == '"') {
+        quoted = true;
+        while (true) {
+          c = read();
+          if (c == -1) throw new IOException("Unterminated quoted field in CSV input!");
+          if (c == '"') {
+            c = read();
+            if (c != '"') break;
+          }
+          field.append((char) c);
+        }
+      }
+      while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+        field.append((char) c);
+        c = read();
+      }
+      record.add(quoted || field.length() > 0 ? field.toString() : null);
+      if (c != ',') break;
+      c = read();
+    }
+    if (c == '\r') {
+      c = read();
+      if (c != '\n') peeked = c;
+    }
+    return record;
+  }
+
+  private int read() throws IOException {
+    if (peeked != -2) {
+      int c = peeked;
+      peeked = -2;
+      return c;
+    }
+    return in.read();
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
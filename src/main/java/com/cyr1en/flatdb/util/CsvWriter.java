@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming writer of comma separated values that {@link CsvReader} and H2's CSVREAD can read back.
+ *
+ * <p>Null is written as an empty field. Other values are written with {@link String#valueOf(Object)}
+ * and quoted only if they are empty or contain a comma, a quote or a line break.</p>
+ */
+public class CsvWriter implements Closeable, Flushable {
+
+  private final Writer out;
+
+  public CsvWriter(Writer out) {
+    this.out = out;
+  }
+
+  public void write(Object... record) throws IOException {
+    for (int i = 0; i < record.length; i++) {
+      if (i > 0) out.write(',');
+      if (record[i] != null) writeField(String.valueOf(record[i]));
+    }
+    out.write('\n');
+  }
+
+  private void writeField(String value) throws IOException {
+    if (!value.isEmpty() && value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+            value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      out.write(value);
+      return;
+    }
+    out.write('"');
+    out.write(value.replace("\"", "\"\""));
+    out.write('"');
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb.util;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Light-weight lexical helpers for SQL statements.
+ *
+ * <p>None of these parse SQL; they only tell quoted text, identifiers and numbers apart,
+ * which is enough to compare and group statements.</p>
+ */
+public class SqlText {
+
+  /**
+   * Trim a statement and collapse runs of whitespace outside of quotes, so statements that
+   * only differ in formatting become equal.
+   */
+  public static String normalize(String sql) {
+    StringBuilder sb = new StringBuilder(sql.length());
+    char quote = 0;
+    boolean space = false;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = sb.length() > 0;
+        continue;
+      }
+      if (space) sb.append(' ');
+      space = false;
+      if (quote == 0 && (c == '\'' || c == '"')) quote = c;
+      else if (c == quote) quote = 0;
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Normalize a statement and replace its string and number literals with '?', so statements
+   * that only differ in their inlined values share one fingerprint.
+   *
+   * <p>i.e. {@code SELECT * FROM t WHERE id = 5 AND name = 'x'} becomes
+   * {@code SELECT * FROM t WHERE id = ? AND name = ?}</p>
+   */
+  public static String fingerprint(String sql) {
+    String normalized = normalize(sql);
+    StringBuilder sb = new StringBuilder(normalized.length());
+    int i = 0;
+    while (i < normalized.length()) {
+      char c = normalized.charAt(i);
+      if (c == '\'') {
+        i = skipQuoted(normalized, i);
+        sb.append('?');
+      } else if (c == '"') {
+        int end = skipQuoted(normalized, i);
+        sb.append(normalized, i, end);
+        i = end;
+      } else if (isIdentifierStart(c)) {
+        int end = i;
+        while (end < normalized.length() && isIdentifierPart(normalized.charAt(end))) end++;
+        sb.append(normalized, i, end);
+        i = end;
+      } else if (Character.isDigit(c)) {
+        while (i < normalized.length() && (Character.isDigit(normalized.charAt(i)) || normalized.charAt(i) == '.')) i++;
+        sb.append('?');
+      } else {
+        sb.append(c);
+        i++;
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return the lowercase names of every identifier in a statement that starts with the given
+   * table prefix, i.e. the FlatDB tables it touches.
+   */
+  public static Set<String> tables(String sql, String tablePrefix) {
+    String prefix = tablePrefix.toLowerCase(Locale.ROOT);
+    ImmutableSet.Builder<String> tables = ImmutableSet.builder();
+    int i = 0;
+    while (i < sql.length()) {
+      char c = sql.charAt(i);
+      if (c == '\'') {
+        i = skipQuoted(sql, i);
+      } else if (isIdentifierStart(c)) {
+        int end = i;
+        while (end < sql.length() && isIdentifierPart(sql.charAt(end))) end++;
+        String identifier = sql.substring(i, end).toLowerCase(Locale.ROOT);
+        if (identifier.startsWith(prefix)) tables.add(identifier);
+        i = end;
+      } else {
+        i++;
+      }
+    }
+    return tables.build();
+  }
+
+  /**
+   * @return the index right after the quote that closes the quote at start.
+   */
+  private static int skipQuoted(String sql, int start) {
+    char quote = sql.charAt(start);
+    int i = start + 1;
+    while (i < sql.length()) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isIdentifierStart(char c) {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.concurrent.AsyncExecutor;
+import com.cyr1en.flatdb.concurrent.BackpressurePolicy;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class AsyncExecutorTest {
+
+  @Test
+  public void submitTest() throws ExecutionException, InterruptedException {
+    try (AsyncExecutor executor = new AsyncExecutor(null, 2, 10, BackpressurePolicy.REJECT)) {
+      Assertions.assertThat(executor.submit(() -> 42).get()).isEqualTo(42);
+      CompletableFuture<Object> failed = executor.submit(() -> {
+        throw new IllegalStateException("failed");
+      });
+      Assertions.assertThatThrownBy(failed::get).hasCauseInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void rejectTest() throws InterruptedException {
+    ExecutorService service = Executors.newSingleThreadExecutor();
+    CountDownLatch latch = new CountDownLatch(1);
+    try (AsyncExecutor executor = new AsyncExecutor(service, 1, 1, BackpressurePolicy.REJECT)) {
+      CompletableFuture<Boolean> blocked = executor.submit(() -> {
+        latch.await();
+        return true;
+      });
+      Assertions.assertThat(executor.getPending()).isEqualTo(1);
+      CompletableFuture<Boolean> rejected = executor.submit(() -> true);
+      Assertions.assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+      latch.countDown();
+      Assertions.assertThat(blocked.join()).isTrue();
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  public void closeTest() {
+    AsyncExecutor executor = new AsyncExecutor(null, 1, 10, BackpressurePolicy.REJECT);
+    CompletableFuture<Boolean> running = executor.submit(() -> {
+      Thread.sleep(100);
+      return true;
+    });
+    executor.close();
+    Assertions.assertThat(running).isCompletedWithValue(true);
+    CompletableFuture<Integer> rejected = executor.submit(() -> 1);
+    Assertions.assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+
+    AsyncExecutor unused = new AsyncExecutor(null, 1, 10, BackpressurePolicy.REJECT);
+    unused.close();
+    Assertions.assertThatThrownBy(unused.submit(() -> 1)::get).hasCauseInstanceOf(RejectedExecutionException.class);
+  }
+}
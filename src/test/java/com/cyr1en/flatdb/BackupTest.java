@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.backup.BackupConfig;
+import com.cyr1en.flatdb.backup.BackupMetrics;
+import org.assertj.core.api.Assertions;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+public class BackupTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void backupAndRestoreTest() throws SQLException {
+    String path = new File(folder.getRoot(), "db").getPath();
+    Path backup = folder.getRoot().toPath().resolve("backup.zip");
+    Database database = new DatabaseBuilder().setPath(path).build();
+    database.executeUpdate("CREATE TABLE flatdb_backup (id INT PRIMARY KEY)");
+    database.executeUpdate("INSERT INTO flatdb_backup VALUES (1)");
+    database.backup(backup);
+    database.executeUpdate("INSERT INTO flatdb_backup VALUES (2)");
+    BackupMetrics metrics = database.getBackupMetrics();
+    Assertions.assertThat(metrics.getBackupCount()).isEqualTo(1);
+    Assertions.assertThat(metrics.getLastBackupSize()).isPositive();
+    database.close();
+
+    Database restored = new DatabaseBuilder().setPath(path).restore(backup).build();
+    ResultSet rs = restored.executeQuery("SELECT COUNT(*) FROM flatdb_backup").orElseThrow(IllegalStateException::new);
+    rs.next();
+    Assertions.assertThat(rs.getInt(1)).isEqualTo(1);
+    restored.close();
+  }
+
+  @Test
+  public void manualBackupMetricsTest() throws SQLException {
+    Database database = new DatabaseBuilder()
+            .setPath(new File(folder.getRoot(), "manual").getPath())
+            .setBackups(new BackupConfig())
+            .build();
+    database.executeUpdate("CREATE TABLE flatdb_backup (id INT PRIMARY KEY)");
+    database.backup(folder.getRoot().toPath().resolve("manual.zip"));
+    database.executeUpdate("INSERT INTO flatdb_backup VALUES (1)");
+    BackupMetrics metrics = database.getBackupMetrics();
+    database.close();
+
+    Assertions.assertThat(metrics.getBackupCount()).isEqualTo(1);
+    Assertions.assertThat(metrics.getForegroundLatencyOutsideBackup().getCount()).isPositive();
+  }
+
+  @Test
+  public void scheduledBackupTest() throws SQLException, IOException, InterruptedException {
+    File backups = folder.newFolder("backups");
+    Database database = new DatabaseBuilder()
+            .setPath(new File(folder.getRoot(), "scheduled").getPath())
+            .setBackups(new BackupConfig()
+                    .setDirectory(backups.toPath())
+                    .setInterval(20, TimeUnit.MILLISECONDS)
+                    .setRetention(2))
+            .build();
+    database.executeUpdate("CREATE TABLE flatdb_backup (id INT PRIMARY KEY)");
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (database.getBackupMetrics().getBackupCount() < 4 && System.currentTimeMillis() < deadline)
+      database.executeQuery("SELECT * FROM flatdb_backup");
+    database.close();
+
+    Assertions.assertThat(database.getBackupMetrics().getBackupCount()).isGreaterThanOrEqualTo(4);
+    Assertions.assertThat(backups.list((dir, name) -> name.endsWith(".zip"))).hasSize(2);
+    Assertions.assertThat(database.getBackupMetrics().getForegroundLatencyOutsideBackup().getCount()).isPositive();
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.pool.ConnectionPool;
+import com.cyr1en.flatdb.pool.PoolConfig;
+import com.cyr1en.flatdb.pool.PoolMetrics;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+public class ConnectionPoolTest {
+
+  private ConnectionPool pool;
+
+  @Before
+  public void before() throws SQLException {
+    PoolConfig config = new PoolConfig()
+            .setMinSize(1)
+            .setMaxSize(2)
+            .setAcquireTimeout(100, TimeUnit.MILLISECONDS)
+            .setValidationQuery("SELECT 1")
+            .setStatementCacheSize(2);
+    pool = new ConnectionPool("jdbc:h2:mem:poolTest;DB_CLOSE_DELAY=-1", config);
+  }
+
+  @After
+  public void after() {
+    pool.close();
+  }
+
+  @Test
+  public void leaseAndReleaseTest() throws SQLException {
+    Assertions.assertThat(pool.getMetrics().getOpenConnections()).isEqualTo(1);
+    try (Connection connection = pool.getConnection()) {
+      Assertions.assertThat(connection.isValid(1)).isTrue();
+      Assertions.assertThat(pool.getMetrics().getActiveLeases()).isEqualTo(1);
+    }
+    Assertions.assertThat(pool.getMetrics().getActiveLeases()).isEqualTo(0);
+    Assertions.assertThat(pool.getMetrics().getLeaseCount()).isEqualTo(1);
+    Assertions.assertThat(pool.getMetrics().getOpenConnections()).isEqualTo(1);
+  }
+
+  @Test
+  public void closedLeaseTest() throws SQLException {
+    Connection connection = pool.getConnection();
+    connection.close();
+    Assertions.assertThat(connection.isClosed()).isTrue();
+    Assertions.assertThatThrownBy(connection::createStatement).isInstanceOf(SQLException.class);
+  }
+
+  @Test
+  public void exhaustionTest() throws SQLException {
+    Connection first = pool.getConnection();
+    Connection second = pool.getConnection();
+    try {
+      Assertions.assertThatThrownBy(pool::getConnection).isInstanceOf(SQLTimeoutException.class);
+    } finally {
+      first.close();
+      second.close();
+    }
+    Assertions.assertThat(pool.getMetrics().getExhaustedCount()).isEqualTo(1);
+    Assertions.assertThat(pool.getMetrics().getTimeoutCount()).isEqualTo(1);
+    Assertions.assertThat(pool.getMetrics().getOpenConnections()).isEqualTo(2);
+  }
+
+  @Test
+  public void statementCacheTest() throws SQLException {
+    try (Connection connection = pool.getConnection()) {
+      for (int i = 0; i < 3; i++) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT ?")) {
+          statement.setInt(1, i);
+          statement.executeQuery();
+        }
+      }
+    }
+    Assertions.assertThat(pool.getMetrics().getStatementCacheMisses()).isEqualTo(1);
+    Assertions.assertThat(pool.getMetrics().getStatementCacheHits()).isEqualTo(2);
+  }
+
+  @Test
+  public void statementSettingsResetTest() throws SQLException {
+    try (Connection connection = pool.getConnection()) {
+      int fetchSize;
+      int maxRows;
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+        fetchSize = statement.getFetchSize();
+        maxRows = statement.getMaxRows();
+        statement.setFetchSize(fetchSize + 10);
+        statement.setMaxRows(maxRows + 10);
+      }
+      try (PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+        Assertions.assertThat(statement.getFetchSize()).isEqualTo(fetchSize);
+        Assertions.assertThat(statement.getMaxRows()).isEqualTo(maxRows);
+      }
+    }
+    Assertions.assertThat(pool.getMetrics().getStatementCacheHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void statementInUseTest() throws SQLException {
+    try (Connection connection = pool.getConnection();
+         PreparedStatement first = connection.prepareStatement("SELECT 1");
+         PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+      Assertions.assertThat(first).isNotSameAs(second);
+      Assertions.assertThat(pool.getMetrics().getStatementCacheMisses()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void readPoolTest() throws SQLException {
+    Database database = new DatabaseBuilder()
+            .setPath("mem:readPoolTest;DB_CLOSE_DELAY=-1")
+            .enableReadPool(2)
+            .setReadYourWrites(1, TimeUnit.MINUTES)
+            .build();
+    try {
+      PoolMetrics reads = database.getReadPoolMetrics().orElseThrow(IllegalStateException::new);
+      long writerLeases = database.getPoolMetrics().getLeaseCount();
+      database.executeQuery("SELECT 1");
+      Assertions.assertThat(reads.getLeaseCount()).isEqualTo(1);
+      Assertions.assertThat(database.getPoolMetrics().getLeaseCount()).isEqualTo(writerLeases);
+
+      database.executeUpdate("CREATE TABLE routed (id INT)");
+      database.executeQuery("SELECT COUNT(*) FROM routed");
+      Assertions.assertThat(reads.getLeaseCount()).isEqualTo(1);
+      Assertions.assertThat(database.getPoolMetrics().getLeaseCount()).isEqualTo(writerLeases + 2);
+    } finally {
+      database.executeUpdate("DROP ALL OBJECTS");
+      database.close();
+    }
+  }
+}
@@ -3,15 +3,23 @@ package com.cyr1en.flatdb;
 import com.cyr1en.flatdb.util.FastStrings;
 import org.assertj.core.api.Assertions;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class DatabaseOptionsTest {
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   private DatabaseBuilder dbBuilder;
 
   @Before
@@ -95,4 +103,43 @@ public class DatabaseOptionsTest {
     if(file.exists())
       file.delete();
   }
+
+  @Test
+  public void storageModeTest() throws Exception {
+    String path = folder.getRoot().getAbsolutePath() + "/modeDB";
+    dbBuilder.setPath(path).setStorageMode(StorageMode.MEMORY);
+    Assertions.assertThat(dbBuilder.getConnectionURL()).isEqualTo("jdbc:h2:mem:" + path + ";DB_CLOSE_DELAY=-1");
+    Database memory = dbBuilder.build();
+    memory.executeUpdate("CREATE TABLE kv (id INT PRIMARY KEY, name VARCHAR(16))");
+    memory.executeUpdate("INSERT INTO kv VALUES (1, 'one')");
+    Assertions.assertThat(count(memory)).isEqualTo(1);
+    memory.close();
+    Assertions.assertThat(folder.getRoot().list()).isEmpty();
+
+    DatabaseBuilder persisted = new DatabaseBuilder().setPath(path)
+            .setStorageMode(StorageMode.MEMORY_WITH_PERSIST)
+            .setCheckpointInterval(0, TimeUnit.SECONDS);
+    Database first = persisted.build();
+    first.executeUpdate("CREATE TABLE kv (id INT PRIMARY KEY, name VARCHAR(16))");
+    first.executeUpdate("INSERT INTO kv VALUES (1, 'one'), (2, 'two')");
+    first.close();
+    Assertions.assertThat(Files.exists(persisted.getSnapshotPath())).isTrue();
+
+    Database second = persisted.build();
+    Assertions.assertThat(count(second)).isEqualTo(2);
+    second.close();
+
+    dbBuilder = new DatabaseBuilder().setPath(path).setStorageMode(StorageMode.NIO_MAPPED);
+    Assertions.assertThat(dbBuilder.getConnectionURL()).isEqualTo("jdbc:h2:nioMapped:" + path);
+    Database mapped = dbBuilder.build();
+    mapped.executeUpdate("CREATE TABLE kv (id INT PRIMARY KEY, name VARCHAR(16))");
+    Assertions.assertThat(count(mapped)).isEqualTo(0);
+    mapped.close();
+  }
+
+  private static int count(Database database) throws SQLException {
+    ResultSet rs = database.executeQuery("SELECT COUNT(*) FROM kv").orElseThrow(IllegalStateException::new);
+    rs.next();
+    return rs.getInt(1);
+  }
 }
@@ -5,6 +5,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({DatabaseOptionsTest.class, TypeMapTest.class})
+@Suite.SuiteClasses({DatabaseOptionsTest.class, TypeMapTest.class, ConnectionPoolTest.class,
+        FlatTableTest.class, AsyncExecutorTest.class, WriteBehindQueueTest.class,
+        QueryResultCacheTest.class, TableProcessorTest.class, StatementMetricsTest.class,
+        BackupTest.class, TransactionTest.class, QueryTimeoutTest.class,
+        GeneratedTableTest.class})
 public class FlatFileDBTest {
 }
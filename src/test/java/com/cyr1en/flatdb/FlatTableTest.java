@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import com.cyr1en.flatdb.cache.CacheSpec;
+import com.google.common.cache.CacheStats;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class FlatTableTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Database database;
+  private FlatTable<TestRow> table;
+
+  @Before
+  public void before() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:flatTableTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .setBatchSize(100)
+            .appendTable(TestRow.class)
+            .build();
+    table = database.getTable(TestRow.class);
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void insertAllTest() throws SQLException {
+    Assertions.assertThat(table.getBatchSize()).isEqualTo(100);
+    Assertions.assertThat(table.insertAll(rows(250, "name"))).isEqualTo(250);
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_test_row")).isEqualTo(250);
+  }
+
+  @Test
+  public void updateAllTest() throws SQLException {
+    table.insertAll(rows(250, "name"));
+    List<TestRow> updated = rows(250, "updated");
+    for (int i = 0; i < updated.size(); i++)
+      updated.get(i).id = i + 1;
+    Assertions.assertThat(table.updateAll(updated)).isEqualTo(250);
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_test_row WHERE name LIKE 'updated%'")).isEqualTo(250);
+  }
+
+  @Test
+  public void insertAndFindTest() {
+    Assertions.assertThat(table.insert(new TestRow("first", 1))).isEqualTo(1);
+    Assertions.assertThat(table.insert(new TestRow("second", 2))).isEqualTo(1);
+
+    TestRow found = table.findById(2).orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(found.id).isEqualTo(2);
+    Assertions.assertThat(found.name).isEqualTo("second");
+    Assertions.assertThat(found.score).isEqualTo(2);
+    Assertions.assertThat(table.findById(3)).isEmpty();
+
+    List<TestRow> all = table.findAll();
+    Assertions.assertThat(all).extracting(row -> row.name).containsExactlyInAnyOrder("first", "second");
+  }
+
+  @Test
+  public void cacheTest() {
+    table.enableCache(CacheSpec.of(10));
+    table.insert(new TestRow("first", 1));
+    TestRow found = table.findById(1).orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(table.findById(1)).containsSame(found);
+
+    found.name = "updated";
+    table.updateAll(Collections.singletonList(found));
+    Assertions.assertThat(table.findById(1).map(row -> row.name)).contains("updated");
+
+    CacheStats stats = table.getCacheStats().orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(stats.hitCount()).isEqualTo(1);
+    Assertions.assertThat(stats.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void cacheKeyTest() {
+    table.enableCache(CacheSpec.of(10));
+    table.insert(new TestRow("first", 1));
+    TestRow found = table.findById(1L).orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(table.findById(1)).containsSame(found);
+
+    TestRow updated = new TestRow("updated", 1);
+    updated.id = 1;
+    table.updateAll(Collections.singletonList(updated));
+    Assertions.assertThat(table.findById(1L).map(row -> row.name)).contains("updated");
+  }
+
+  @Test
+  public void keyValueTest() {
+    KeyValueView<TestRow> kv = table.kv();
+    TestRow row = new TestRow("first", 1);
+    row.id = 7;
+    Assertions.assertThat(kv.put(row)).isEqualTo(1);
+    Assertions.assertThat(kv.get(7).map(found -> found.name)).contains("first");
+
+    row.name = "replaced";
+    kv.put(row);
+    Assertions.assertThat(table.findAll()).extracting(found -> found.name).containsExactly("replaced");
+    Assertions.assertThat(kv.containsKey(7)).isTrue();
+    Assertions.assertThat(kv.remove(7)).isTrue();
+    Assertions.assertThat(kv.get(7)).isEmpty();
+    Assertions.assertThat(kv.containsKey(7)).isFalse();
+  }
+
+  @Test
+  public void streamTest() {
+    table.insertAll(rows(250, "name"));
+    try (Stream<TestRow> stream = table.stream()) {
+      Assertions.assertThat(stream.count()).isEqualTo(250);
+    }
+    try (Stream<String> names = database.stream("SELECT name FROM flatdb_test_row WHERE score < ? ORDER BY score",
+            rs -> rs.getString(1), 100)) {
+      Assertions.assertThat(names.limit(3).collect(Collectors.toList())).containsExactly("name0", "name1", "name2");
+    }
+    Assertions.assertThat(database.getPoolMetrics().getActiveLeases()).isEqualTo(0);
+  }
+
+  @Test
+  public void csvTest() throws IOException, SQLException {
+    List<TestRow> rows = rows(250, "name, \"quoted\"");
+    table.insertAll(rows);
+    for (boolean nativeCsv : new boolean[]{true, false}) {
+      table.setNativeCsv(nativeCsv);
+      Path file = folder.newFile().toPath();
+      List<Long> progress = new ArrayList<>();
+      Assertions.assertThat(table.exportCsv(file, progress::add)).isEqualTo(250);
+      Assertions.assertThat(progress).last().isEqualTo(250L);
+
+      database.executeUpdate("DELETE FROM flatdb_test_row");
+      Assertions.assertThat(table.importCsv(file)).isEqualTo(250);
+      Assertions.assertThat(table.findById(2).map(row -> row.name)).contains("name, \"quoted\"1");
+    }
+
+    Path partial = folder.newFile().toPath();
+    Files.write(partial, "NAME,score\nimported,7\n\"multi\nline\",8\n".getBytes(StandardCharsets.UTF_8));
+    table.setNativeCsv(false);
+    Assertions.assertThat(table.importCsv(partial)).isEqualTo(2);
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_test_row WHERE name = 'multi\nline' AND score = 8"))
+            .isEqualTo(1);
+  }
+
+  private int count(String query) throws SQLException {
+    ResultSet rs = database.executeQuery(query).orElseThrow(IllegalStateException::new);
+    rs.next();
+    return rs.getInt(1);
+  }
+
+  private List<TestRow> rows(int amount, String name) {
+    List<TestRow> rows = new ArrayList<>();
+    for (int i = 0; i < amount; i++)
+      rows.add(new TestRow(name + i, i));
+    return rows;
+  }
+
+  @Table(nameOverride = "test_row")
+  public static class TestRow {
+    @Column(primaryKey = true, autoIncrement = true) int id;
+    @Column String name;
+    @Column int score;
+
+    public TestRow() {
+    }
+
+    TestRow(String name, int score) {
+      this.name = name;
+      this.score = score;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Table;
+import com.cyr1en.flatdb.mapper.EntityMappers;
+import com.cyr1en.flatdb.mapper.GeneratedTable;
+import com.cyr1en.flatdb.mapper.GeneratedTables;
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.StatementEvent;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GeneratedTableTest {
+
+  private Database database;
+  private List<String> statements;
+
+  @Before
+  public void before() throws SQLException {
+    statements = new ArrayList<>();
+    database = new DatabaseBuilder()
+            .setPath("mem:generatedTableTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .addListener(new DatabaseListener() {
+              @Override
+              public void afterStatement(StatementEvent event) {
+                statements.add(event.getSql());
+              }
+            })
+            .appendTable(GeneratedRow.class)
+            .appendTable(AllTypesRow.class)
+            .build();
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void generatedTableTest() {
+    GeneratedTable<GeneratedRow> generated = GeneratedTables.find(GeneratedRow.class)
+            .orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(generated.getClass().getName()).isEqualTo(GeneratedTables.generatedName(GeneratedRow.class));
+
+    FlatTable<GeneratedRow> table = database.getTable(GeneratedRow.class);
+    Assertions.assertThat(generated.getTableName()).isEqualTo("generated_row");
+    Assertions.assertThat(statements).contains(generated.getCreateTableSql(table.getTableName()));
+    Assertions.assertThat(EntityMappers.forSchema(table.getSchema())).isSameAs(generated);
+  }
+
+  @Test
+  public void generatedMapperTest() {
+    FlatTable<GeneratedRow> table = database.getTable(GeneratedRow.class);
+    GeneratedRow row = new GeneratedRow();
+    row.id = 7;
+    row.name = "seven";
+    row.score = 7.5;
+    Assertions.assertThat(table.insert(row)).isEqualTo(1);
+
+    GeneratedRow found = table.findById(7).orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(found.id).isEqualTo(7);
+    Assertions.assertThat(found.name).isEqualTo("seven");
+    Assertions.assertThat(found.score).isEqualTo(7.5);
+  }
+
+  @Test
+  public void createTableSqlTest() {
+    GeneratedTable<AllTypesRow> generated = GeneratedTables.find(AllTypesRow.class)
+            .orElseThrow(IllegalStateException::new);
+    FlatTable<AllTypesRow> table = database.getTable(AllTypesRow.class);
+    Assertions.assertThat(generated.getCreateTableSql(table.getTableName()))
+            .isEqualTo(new TableProcessor(database).reflectiveCreateTableSql(table.getSchema()));
+  }
+
+  @Table(nameOverride = "generated_row")
+  public static class GeneratedRow {
+    @Column(primaryKey = true) int id;
+    @Column String name;
+    @Column double score;
+  }
+
+  @Table(nameOverride = "all_types_row")
+  public static class AllTypesRow {
+    @Column(primaryKey = true, autoIncrement = true) long id;
+    @Column boolean flag;
+    @Column Boolean boxedFlag;
+    @Column(defaultValue = "none") String name;
+    @Column BigDecimal amount;
+    @Column int count;
+    @Column Integer boxedCount;
+    @Column(defaultValue = "7") Long boxedTotal;
+    @Column float ratio;
+    @Column Float boxedRatio;
+    @Column double score;
+    @Column Double boxedScore;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.google.common.cache.CacheStats;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class QueryResultCacheTest {
+
+  private Database database;
+
+  @Before
+  public void before() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:resultCacheTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .enableResultCache(1024 * 1024)
+            .build();
+    database.executeUpdate("CREATE TABLE flatdb_dashboard (id INT PRIMARY KEY, name VARCHAR(32))");
+    database.executeUpdate("INSERT INTO flatdb_dashboard VALUES (?, ?)", 1, "first");
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void cacheHitTest() throws SQLException {
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_dashboard WHERE id > ?", 0)).isEqualTo(1);
+    Assertions.assertThat(count("SELECT COUNT(*)\n  FROM flatdb_dashboard   WHERE id > ?", 0)).isEqualTo(1);
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_dashboard WHERE id > ?", 1)).isEqualTo(0);
+
+    CacheStats stats = database.getResultCacheStats().orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(stats.hitCount()).isEqualTo(1);
+    Assertions.assertThat(stats.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidationTest() throws SQLException {
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_dashboard")).isEqualTo(1);
+    database.executeUpdate("INSERT INTO flatdb_dashboard VALUES (?, ?)", 2, "second");
+    Assertions.assertThat(count("SELECT COUNT(*) FROM flatdb_dashboard")).isEqualTo(2);
+    Assertions.assertThat(database.getResultCacheStats().map(CacheStats::hitCount)).contains(0L);
+  }
+
+  @Test
+  public void readOnlyHitTest() throws SQLException {
+    ResultSet first = database.executeQuery("SELECT name FROM flatdb_dashboard").orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(first.next()).isTrue();
+    Assertions.assertThatThrownBy(() -> first.updateString(1, "changed")).isInstanceOf(SQLException.class);
+    first.close();
+
+    ResultSet second = database.executeQuery("SELECT name FROM flatdb_dashboard").orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(second.next()).isTrue();
+    Assertions.assertThat(second.getString(1)).isEqualTo("first");
+    Assertions.assertThat(database.getResultCacheStats().map(CacheStats::hitCount)).contains(1L);
+  }
+
+  private int count(String query, Object... params) throws SQLException {
+    ResultSet rs = database.executeQuery(query, params).orElseThrow(IllegalStateException::new);
+    rs.next();
+    return rs.getInt(1);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.metrics.StatementMetrics;
+import com.cyr1en.flatdb.metrics.StatementStats;
+import com.cyr1en.flatdb.util.SqlText;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+public class QueryTimeoutTest {
+
+  private static final String LONG_QUERY = "SELECT SUM(X) FROM SYSTEM_RANGE(1, 2000000000)";
+  private static final String FINGERPRINT = SqlText.fingerprint(LONG_QUERY);
+
+  private Database database;
+  private StatementMetrics metrics;
+
+  @Before
+  public void before() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:queryTimeoutTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .setQueryTimeout(1, TimeUnit.SECONDS)
+            .enableStatementMetrics()
+            .build();
+    metrics = database.getMetrics().orElseThrow(IllegalStateException::new);
+  }
+
+  @After
+  public void after() {
+    database.close();
+  }
+
+  @Test
+  public void defaultTimeoutTest() {
+    long start = System.nanoTime();
+    Assertions.assertThat(database.executeQuery(LONG_QUERY)).isEmpty();
+    Assertions.assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(30));
+    Assertions.assertThat(stats().getTimeouts()).isEqualTo(1);
+    Assertions.assertThat(stats().getCancellations()).isEqualTo(0);
+    Assertions.assertThat(database.executeQuery(5, TimeUnit.SECONDS, "SELECT 1")).isPresent();
+  }
+
+  @Test
+  public void cancelTest() throws InterruptedException {
+    QueryHandle<?> handle = database.executeQueryAsync(0, TimeUnit.SECONDS, LONG_QUERY);
+    Thread.sleep(200);
+    Assertions.assertThat(handle.cancel()).isTrue();
+    Assertions.assertThat(handle.isCancelled()).isTrue();
+    Assertions.assertThatThrownBy(handle::join).isInstanceOf(CancellationException.class);
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (metrics.getStatement(FINGERPRINT).map(StatementStats::getCancellations).orElse(0L) == 0
+            && System.nanoTime() < deadline)
+      Thread.sleep(10);
+    Assertions.assertThat(stats().getCancellations()).isEqualTo(1);
+    Assertions.assertThat(stats().getTimeouts()).isEqualTo(0);
+  }
+
+  private StatementStats stats() {
+    return metrics.getStatement(FINGERPRINT).orElseThrow(IllegalStateException::new);
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.metrics.DatabaseListener;
+import com.cyr1en.flatdb.metrics.LatencyHistogram;
+import com.cyr1en.flatdb.metrics.SlowQueryLogConfig;
+import com.cyr1en.flatdb.metrics.StatementEvent;
+import com.cyr1en.flatdb.metrics.StatementKind;
+import com.cyr1en.flatdb.metrics.StatementMetrics;
+import com.cyr1en.flatdb.metrics.StatementStats;
+import com.cyr1en.flatdb.util.SqlText;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class StatementMetricsTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Database database;
+  private List<StatementEvent> events;
+
+  @Before
+  public void before() throws SQLException {
+    events = new ArrayList<>();
+    database = new DatabaseBuilder()
+            .setPath("mem:metricsTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .enableStatementMetrics()
+            .addListener(new DatabaseListener() {
+              @Override
+              public void afterStatement(StatementEvent event) {
+                events.add(event);
+              }
+            })
+            .build();
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void fingerprintTest() {
+    Assertions.assertThat(SqlText.fingerprint("SELECT *  FROM flatdb_t\n WHERE id = 5 AND name = 'it''s'"))
+            .isEqualTo("SELECT * FROM flatdb_t WHERE id = ? AND name = ?");
+    Assertions.assertThat(SqlText.tables("SELECT * FROM flatdb_a JOIN FLATDB_B ON x = 'flatdb_c'", "flatdb_"))
+            .containsExactly("flatdb_a", "flatdb_b");
+  }
+
+  @Test
+  public void histogramTest() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++)
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+    Assertions.assertThat(histogram.getCount()).isEqualTo(1000);
+    Assertions.assertThat(histogram.getPercentile(50, TimeUnit.MICROSECONDS)).isBetween(470L, 530L);
+    Assertions.assertThat(histogram.getPercentile(99, TimeUnit.MICROSECONDS)).isBetween(930L, 1000L);
+    Assertions.assertThat(histogram.getMax(TimeUnit.MICROSECONDS)).isEqualTo(1000);
+  }
+
+  @Test
+  public void statementMetricsTest() {
+    database.executeUpdate("CREATE TABLE flatdb_metrics (id INT PRIMARY KEY)");
+    for (int i = 0; i < 10; i++)
+      database.executeUpdate("INSERT INTO flatdb_metrics VALUES (?)", i);
+    database.executeUpdate("INSERT INTO flatdb_metrics VALUES (?)", 0);
+    database.executeQuery("SELECT * FROM flatdb_metrics");
+
+    StatementMetrics metrics = database.getMetrics().orElseThrow(IllegalStateException::new);
+    StatementStats insert = metrics.getStatement("INSERT INTO flatdb_metrics VALUES (?)")
+            .orElseThrow(IllegalStateException::new);
+    Assertions.assertThat(insert.getExecutions()).isEqualTo(11);
+    Assertions.assertThat(insert.getErrors()).isEqualTo(1);
+    Assertions.assertThat(insert.getRows()).isEqualTo(10);
+    Assertions.assertThat(metrics.getTable("flatdb_metrics").map(StatementStats::getExecutions)).contains(13L);
+
+    StatementEvent select = events.get(events.size() - 1);
+    Assertions.assertThat(select.getRowCount()).isEqualTo(10);
+    Assertions.assertThat(select.getDuration(TimeUnit.NANOSECONDS)).isPositive();
+  }
+
+  @Test
+  public void runtimeFailureTest() {
+    Instrumentation instrumentation = new Instrumentation(Collections.singletonList(new DatabaseListener() {
+      @Override
+      public void afterStatement(StatementEvent event) {
+        events.add(event);
+      }
+    }), "flatdb_", e -> {});
+    Assertions.assertThatThrownBy(() -> instrumentation.record("SELECT * FROM flatdb_metrics", StatementKind.QUERY,
+            () -> {
+              throw new IllegalStateException("mapping failed");
+            }, r -> 0)).isInstanceOf(IllegalStateException.class);
+
+    StatementEvent failed = events.get(events.size() - 1);
+    Assertions.assertThat(failed.isFailed()).isTrue();
+    Assertions.assertThat(failed.getError().map(Throwable::getCause)).containsInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void slowQueryLogTest() throws SQLException, IOException {
+    File log = new File(folder.getRoot(), "slow.%g.log");
+    Database logged = new DatabaseBuilder()
+            .setPath("mem:slowQueryTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .setSlowQueryLog(new SlowQueryLogConfig()
+                    .setThreshold(0, TimeUnit.MILLISECONDS)
+                    .setLogFile(log.getPath())
+                    .setMaxEntriesPerSecond(1000))
+            .build();
+    // Statements on getConnection() aren't reported, so the SELECT is the only entry and can't be rate limited.
+    try (Connection connection = logged.getConnection();
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE flatdb_slow (id INT PRIMARY KEY)");
+      statement.execute("INSERT INTO flatdb_slow VALUES (42)");
+    }
+    logged.executeQuery("SELECT * FROM flatdb_slow WHERE id = ?", 42);
+    logged.close();
+
+    String written = new String(Files.readAllBytes(new File(folder.getRoot(), "slow.0.log").toPath()),
+            StandardCharsets.UTF_8);
+    Assertions.assertThat(written)
+            .contains("SELECT * FROM flatdb_slow WHERE id = ?")
+            .contains("params: [42]")
+            .contains("plan:")
+            .doesNotContain("rate limit");
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.annotations.Column;
+import com.cyr1en.flatdb.annotations.Index;
+import com.cyr1en.flatdb.annotations.Table;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class TableProcessorTest {
+
+  private Database database;
+
+  @Before
+  public void before() throws SQLException {
+    database = new DatabaseBuilder()
+            .setPath("mem:tableProcessorTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .build();
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void reconcileTest() throws SQLException {
+    database.executeUpdate("CREATE TABLE flatdb_evolving (id INT NOT NULL)");
+    Map<Class<?>, FlatTable<?>> tables = new TableProcessor(database)
+            .processAll(Arrays.asList(Fresh.class, Evolving.class));
+
+    Assertions.assertThat(tables.keySet()).containsExactly(Fresh.class, Evolving.class);
+    Assertions.assertThat(columnCount("flatdb_fresh")).isEqualTo(2);
+    Assertions.assertThat(columnCount("flatdb_evolving")).isEqualTo(3);
+
+    new TableProcessor(database).processAll(Arrays.asList(Fresh.class, Evolving.class));
+    Assertions.assertThat(columnCount("flatdb_evolving")).isEqualTo(3);
+  }
+
+  @Test
+  public void parallelTest() throws SQLException {
+    Map<Class<?>, FlatTable<?>> tables = new TableProcessor(database)
+            .processAll(Arrays.asList(Evolving.class, Fresh.class), 2);
+
+    Assertions.assertThat(tables.keySet()).containsExactly(Evolving.class, Fresh.class);
+    Assertions.assertThat(columnCount("flatdb_fresh")).isEqualTo(2);
+    Assertions.assertThat(columnCount("flatdb_evolving")).isEqualTo(3);
+    Assertions.assertThat(database.getPoolMetrics().getActiveLeases()).isEqualTo(0);
+  }
+
+  @Test
+  public void fingerprintTest() throws SQLException {
+    new TableProcessor(database, true).processAll(Collections.singletonList(Fresh.class));
+    Assertions.assertThat(database.tableExists("flatdb_fresh")).isTrue();
+    Assertions.assertThat(database.tableExists("flatdb_schema_fingerprints")).isTrue();
+
+    database.executeUpdate("DROP TABLE flatdb_fresh");
+    new TableProcessor(database, true).processAll(Collections.singletonList(Fresh.class));
+    Assertions.assertThat(database.tableExists("flatdb_fresh")).isFalse();
+
+    new TableProcessor(database).processAll(Collections.singletonList(Fresh.class));
+    Assertions.assertThat(database.tableExists("flatdb_fresh")).isTrue();
+  }
+
+  @Test
+  public void indexTest() throws SQLException {
+    database.executeUpdate("CREATE TABLE flatdb_indexed (id INT NOT NULL PRIMARY KEY, name VARCHAR, level INT)");
+    database.executeUpdate("CREATE INDEX flatdb_indexed_old_idx ON flatdb_indexed (level)");
+    TableProcessor processor = new TableProcessor(database);
+    processor.processAll(Collections.singletonList(Indexed.class));
+
+    database.executeUpdate("INSERT INTO flatdb_indexed (id, name, level) VALUES (1, 'a', 1)");
+    Assertions.assertThat(database.executeUpdate("INSERT INTO flatdb_indexed (id, name, level) VALUES (2, 'a', 2)"))
+            .isEqualTo(0);
+    Assertions.assertThat(processor.findUndeclaredIndexes(Collections.singletonList(Indexed.class)))
+            .containsOnlyKeys("flatdb_indexed")
+            .containsValue(Collections.singletonList("flatdb_indexed_old_idx"));
+
+    processor.processAll(Collections.singletonList(Indexed.class));
+    ResultSet rs = database.executeQuery("SELECT COUNT(DISTINCT index_name) FROM information_schema.indexes " +
+            "WHERE index_name IN ('FLATDB_INDEXED_NAME_IDX', 'FLATDB_INDEXED_LEVEL_NAME_IDX')")
+            .orElseThrow(IllegalStateException::new);
+    rs.next();
+    Assertions.assertThat(rs.getInt(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void namedIndexTest() throws SQLException {
+    new TableProcessor(database).processAll(Arrays.asList(NamedFirst.class, NamedSecond.class));
+    ResultSet rs = database.executeQuery("SELECT COUNT(DISTINCT index_name) FROM information_schema.indexes " +
+            "WHERE index_name IN ('FLATDB_NAMED_FIRST_BY_NAME', 'FLATDB_NAMED_SECOND_BY_NAME')")
+            .orElseThrow(IllegalStateException::new);
+    rs.next();
+    Assertions.assertThat(rs.getInt(1)).isEqualTo(2);
+  }
+
+  private int columnCount(String table) throws SQLException {
+    ResultSet rs = database.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")
+            .orElseThrow(IllegalStateException::new);
+    return rs.getMetaData().getColumnCount();
+  }
+
+  @Table
+  public static class Fresh {
+    @Column(primaryKey = true, autoIncrement = true) int id;
+    @Column String name;
+  }
+
+  @Table
+  @Index(columns = {"level", "name"})
+  public static class Indexed {
+    @Column(primaryKey = true) int id;
+    @Column @Index(unique = true) String name;
+    @Column int level;
+  }
+
+  @Table(nameOverride = "named_first")
+  public static class NamedFirst {
+    @Column(primaryKey = true) int id;
+    @Column @Index(name = "by_name") String name;
+  }
+
+  @Table(nameOverride = "named_second")
+  public static class NamedSecond {
+    @Column(primaryKey = true) int id;
+    @Column @Index(name = "by_name") String name;
+  }
+
+  @Table
+  public static class Evolving {
+    @Column int id;
+    @Column String name;
+    @Column(defaultValue = "10") int level;
+  }
+}
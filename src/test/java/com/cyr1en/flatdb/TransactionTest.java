@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+public class TransactionTest {
+
+  private Database database;
+
+  @Before
+  public void before() {
+    Assertions.assertThatCode(() -> database = new DatabaseBuilder()
+            .setPath("mem:transactionTest" + System.nanoTime() + ";DB_CLOSE_DELAY=-1")
+            .setTransactionConfig(new TransactionConfig().setBackoff(1, 5, TimeUnit.MILLISECONDS))
+            .build()).doesNotThrowAnyException();
+    database.executeUpdate("CREATE TABLE account (id INT PRIMARY KEY, balance INT)");
+    database.executeUpdate("INSERT INTO account VALUES (1, 100), (2, 0)");
+  }
+
+  @After
+  public void after() {
+    database.executeUpdate("DROP ALL OBJECTS");
+    database.close();
+  }
+
+  @Test
+  public void commitTest() throws SQLException {
+    int moved = database.inTransaction(tx -> {
+      tx.executeUpdate("UPDATE account SET balance = balance - 40 WHERE id = 1");
+      database.executeUpdate("UPDATE account SET balance = balance + 40 WHERE id = 2");
+      Assertions.assertThat(balance(tx.executeQuery("SELECT balance FROM account WHERE id = 2"))).isEqualTo(40);
+      return 40;
+    });
+    Assertions.assertThat(moved).isEqualTo(40);
+    Assertions.assertThat(balance(1)).isEqualTo(60);
+    Assertions.assertThat(balance(2)).isEqualTo(40);
+  }
+
+  @Test
+  public void rollbackTest() throws SQLException {
+    Assertions.assertThatThrownBy(() -> database.inTransaction(tx -> {
+      database.executeUpdate("UPDATE account SET balance = 0 WHERE id = 1");
+      return database.executeUpdate("INSERT INTO account VALUES (2, 0)");
+    })).isInstanceOf(SQLException.class);
+    Assertions.assertThat(balance(1)).isEqualTo(100);
+
+    database.inTransaction(tx -> {
+      tx.executeUpdate("UPDATE account SET balance = 0 WHERE id = 1");
+      tx.setRollbackOnly();
+      return null;
+    });
+    Assertions.assertThat(balance(1)).isEqualTo(100);
+  }
+
+  @Test
+  public void streamRollbackTest() {
+    Assertions.assertThatThrownBy(() -> database.inTransaction(tx -> {
+      database.executeUpdate("INSERT INTO account VALUES (3, 30)");
+      try (Stream<Integer> balances = database.stream("SELECT balance FROM account", rs -> rs.getInt(1))) {
+        Assertions.assertThat(balances.count()).isEqualTo(3);
+      }
+      throw new SQLException("after stream");
+    })).hasMessage("after stream");
+    Assertions.assertThat(count()).isEqualTo(2);
+  }
+
+  @Test
+  public void savepointTest() throws SQLException {
+    database.inTransaction(tx -> {
+      tx.executeUpdate("UPDATE account SET balance = 50 WHERE id = 1");
+      Savepoint savepoint = tx.setSavepoint();
+      Assertions.assertThat(database.executeUpdate("INSERT INTO account VALUES (1, 0)")).isEqualTo(0);
+      tx.rollback(savepoint);
+      Assertions.assertThatThrownBy(() -> database.inTransaction(nested -> {
+        nested.executeUpdate("UPDATE account SET balance = 70 WHERE id = 2");
+        throw new SQLException("nested failure");
+      })).hasMessage("nested failure");
+      return null;
+    });
+    Assertions.assertThat(balance(1)).isEqualTo(50);
+    Assertions.assertThat(balance(2)).isEqualTo(0);
+  }
+
+  @Test
+  public void retryTest() throws SQLException {
+    AtomicInteger runs = new AtomicInteger();
+    int attempt = database.inTransaction(tx -> {
+      tx.executeUpdate("UPDATE account SET balance = balance + 1 WHERE id = 2");
+      if (runs.incrementAndGet() < 3) throw new SQLException("Timeout trying to lock table", "HYT00", 50200);
+      return tx.getAttempt();
+    });
+    Assertions.assertThat(attempt).isEqualTo(3);
+    Assertions.assertThat(balance(2)).isEqualTo(1);
+
+    TransactionConfig noRetries = new TransactionConfig().setMaxRetries(0);
+    runs.set(0);
+    Assertions.assertThatThrownBy(() -> database.inTransaction(noRetries, tx -> {
+      runs.incrementAndGet();
+      throw new SQLException("Deadlock detected", "40001", 40001);
+    })).isInstanceOf(SQLException.class);
+    Assertions.assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void connectionTest() throws SQLException {
+    database.inTransaction(new TransactionConfig().setIsolation(Connection.TRANSACTION_SERIALIZABLE), tx -> {
+      try (Connection connection = database.getConnection();
+           Statement statement = connection.createStatement()) {
+        Assertions.assertThat(connection).isSameAs(tx.getConnection());
+        Assertions.assertThat(connection.getTransactionIsolation()).isEqualTo(Connection.TRANSACTION_SERIALIZABLE);
+        statement.executeUpdate("UPDATE account SET balance = 10 WHERE id = 2");
+        connection.commit();
+      }
+      tx.setRollbackOnly();
+      return null;
+    });
+    Assertions.assertThat(balance(2)).isEqualTo(0);
+  }
+
+  private int count() throws SQLException {
+    return balance(database.executeQuery("SELECT COUNT(*) FROM account").orElseThrow(IllegalStateException::new));
+  }
+
+  private int balance(int id) throws SQLException {
+    return balance(database.executeQuery("SELECT balance FROM account WHERE id = ?", id)
+            .orElseThrow(IllegalStateException::new));
+  }
+
+  private static int balance(ResultSet rs) throws SQLException {
+    rs.next();
+    return rs.getInt(1);
+  }
+}
@@ -93,9 +93,35 @@ public class TypeMapTest {
     Assertions.assertThat(TypeMap.getSQLType(TestClass.class)).isNull();
   }
 
+  /**
+   * Test that a database's {@link TypeMap} falls back to its parent without leaking its own types.
+   */
+  @Test
+  public void e() {
+    TypeMap first = new TypeMap(TypeMap.global());
+    TypeMap second = new TypeMap(TypeMap.global());
+    first.register(LocalClass.class, SQLTypePair.of(Types.VARCHAR, "null"), false);
+    Assertions.assertThat(first.resolve(LocalClass.class).getType()).isEqualTo(Types.VARCHAR);
+    Assertions.assertThat(first.isCustom(LocalClass.class)).isTrue();
+    Assertions.assertThat(second.resolve(LocalClass.class)).isNull();
+    Assertions.assertThat(second.resolve(int.class).getType()).isEqualTo(Types.INTEGER);
+
+    Assertions.assertThat(second.resolve(GlobalClass.class)).isNull();
+    TypeMap.addCustomType(GlobalClass.class, SQLTypePair.of(Types.BIGINT, "0"));
+    Assertions.assertThat(second.resolve(GlobalClass.class).getType()).isEqualTo(Types.BIGINT);
+    TypeMap.removeCustomType(GlobalClass.class);
+    Assertions.assertThat(second.resolve(GlobalClass.class)).isNull();
+  }
+
   private class TestClass {
   }
 
   private class TestClass2 {
   }
+
+  private class LocalClass {
+  }
+
+  private class GlobalClass {
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2019 Ethan Bacurio
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cyr1en.flatdb;
+
+import com.cyr1en.flatdb.pool.ConnectionPool;
+import com.cyr1en.flatdb.pool.PoolConfig;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class WriteBehindQueueTest {
+
+  private ConnectionPool pool;
+
+  @Before
+  public void before() throws SQLException {
+    pool = new ConnectionPool("jdbc:h2:mem:writeBehindTest;DB_CLOSE_DELAY=-1", new PoolConfig());
+    try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE wb_test (id INT PRIMARY KEY)");
+    }
+  }
+
+  @After
+  public void after() throws SQLException {
+    try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+      statement.execute("DROP ALL OBJECTS");
+    }
+    pool.close();
+  }
+
+  @Test
+  public void groupCommitTest() throws SQLException {
+    try (WriteBehindQueue queue = new WriteBehindQueue(pool, Instrumentation.NONE, 25, 10_000, 100)) {
+      List<CompletableFuture<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 60; i++)
+        futures.add(queue.submit("INSERT INTO wb_test (id) VALUES (?)", i));
+      queue.flush().join();
+      futures.forEach(f -> Assertions.assertThat(f.join()).isEqualTo(1));
+      Assertions.assertThat(queue.getWriteCount()).isEqualTo(60);
+      Assertions.assertThat(queue.getCommitCount()).isLessThanOrEqualTo(3);
+    }
+    Assertions.assertThat(count()).isEqualTo(60);
+  }
+
+  @Test
+  public void failedStatementTest() throws SQLException {
+    try (WriteBehindQueue queue = new WriteBehindQueue(pool, Instrumentation.NONE, 10, 10_000, 10)) {
+      CompletableFuture<Integer> first = queue.submit("INSERT INTO wb_test (id) VALUES (?)", 1);
+      CompletableFuture<Integer> duplicate = queue.submit("INSERT INTO wb_test (id) VALUES (?)", 1);
+      CompletableFuture<Integer> second = queue.submit("INSERT INTO wb_test (id) VALUES (?)", 2);
+      queue.flush().join();
+      Assertions.assertThat(first.join()).isEqualTo(1);
+      Assertions.assertThat(second.join()).isEqualTo(1);
+      Assertions.assertThatThrownBy(duplicate::join).hasCauseInstanceOf(SQLException.class);
+    }
+    Assertions.assertThat(count()).isEqualTo(2);
+  }
+
+  private int count() throws SQLException {
+    try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement();
+         ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM wb_test")) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+}